@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.dev;
+
+import biomesoplenty.common.world.BOPLayerUtil;
+import biomesoplenty.common.world.layer.LayerBOP;
+import biomesoplenty.common.world.layer.traits.ICastleStreamTransformer;
+import biomesoplenty.common.world.layer.traits.LayerCacheManager;
+import biomesoplenty.common.world.layer.traits.LazyAreaBOP;
+import biomesoplenty.common.world.layer.traits.LazyAreaLayerContextBOP;
+import biomesoplenty.common.world.layer.traits.TileArea;
+import biomesoplenty.common.world.layer.traits.TileAreaGraph;
+import biomesoplenty.common.world.layer.traits.TileAreaLayerContextBOP;
+import net.minecraft.util.registry.Bootstrap;
+import net.minecraft.world.gen.IExtendedNoiseRandom;
+import net.minecraft.world.gen.INoiseRandom;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.area.IAreaFactory;
+import net.minecraft.world.gen.layer.SmoothLayer;
+import net.minecraft.world.gen.layer.ZoomLayer;
+import net.minecraft.world.gen.layer.traits.IAreaTransformer0;
+import net.minecraft.world.gen.layer.traits.IAreaTransformer2;
+import net.minecraft.world.gen.layer.traits.IDimOffset0Transformer;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.function.LongFunction;
+
+/***
+ * Checks the tiled layer engine against the lazy one outside of the game. A small stack with the same kinds
+ * of layers as the overworld, including fused zooms, a streamed castle layer and a branch shared by a merge,
+ * is built with both engines for several seeds. Single positions are compared first, while the tiled buffers
+ * are still empty, then whole regions near the origin and far out. Run with gradlew checkLayerEngines.
+ */
+public class LayerEngineCheck
+{
+    private static final long[] SEEDS = { 0L, 1L, -1L, 8675309L, 1234567890123456789L };
+    // Far enough out for the coordinates to exercise the upper bits of the layer hashes
+    private static final int FAR_OFFSET = 1 << 20;
+    private static final int RADIUS = 128;
+    private static final int POINT_SAMPLES = 4096;
+
+    public static void main(String[] args)
+    {
+        // BOPLayerUtil looks up vanilla biome ids when it is loaded
+        Bootstrap.bootStrap();
+
+        int failures = 0;
+
+        for (long seed : SEEDS)
+        {
+            long mismatches = checkSeed(seed);
+
+            if (mismatches > 0)
+            {
+                System.err.println("Seed " + seed + ": " + mismatches + " mismatches");
+                failures++;
+            }
+        }
+
+        if (failures > 0)
+        {
+            System.err.println(failures + " of " + SEEDS.length + " seeds differ");
+            System.exit(1);
+        }
+
+        System.out.println("The tiled and lazy layer engines match for all " + SEEDS.length + " seeds");
+    }
+
+    private static long checkSeed(long seed)
+    {
+        // No layer in the stack looks at biome traits
+        LayerCacheManager cacheManager = new LayerCacheManager(25, 8192, Collections.emptyMap(), false, 131072);
+        IAreaFactory<LazyAreaBOP> lazyFactory = createFactory((seedModifier) -> new LazyAreaLayerContextBOP(cacheManager, null, seed, seedModifier));
+        LayerBOP lazy = new LayerBOP(lazyFactory, cacheManager);
+
+        TileAreaGraph graph = new TileAreaGraph();
+        IAreaFactory<TileArea> tiledFactory = createFactory((seedModifier) -> new TileAreaLayerContextBOP(graph, null, seed, seedModifier));
+        LayerBOP tiled = new LayerBOP(tiledFactory, graph);
+        long mismatches = 0;
+
+        // Single positions go through the tiled engine's fallback path rather than whole regions
+        Random random = new Random(seed);
+
+        for (int i = 0; i < POINT_SAMPLES; ++i)
+        {
+            int x = random.nextInt(FAR_OFFSET * 2) - FAR_OFFSET;
+            int z = random.nextInt(FAR_OFFSET * 2) - FAR_OFFSET;
+            mismatches += check("getId", seed, x, z, lazy.getId(x, z), tiled.getId(x, z));
+        }
+
+        int size = RADIUS * 2;
+        mismatches += checkRegion(lazy, tiled, seed, -RADIUS, -RADIUS, size, size);
+        mismatches += checkRegion(lazy, tiled, seed, FAR_OFFSET - RADIUS, -FAR_OFFSET - RADIUS, size, size);
+        // Not aligned to tiles, so edges are copied out of partially used tiles
+        mismatches += checkRegion(lazy, tiled, seed, 13, -77, 100, 37);
+
+        return mismatches;
+    }
+
+    private static long checkRegion(LayerBOP lazy, LayerBOP tiled, long seed, int x, int z, int width, int depth)
+    {
+        int[] expected = lazy.getIds(null, x, z, width, depth);
+        int[] actual = tiled.getIds(null, x, z, width, depth);
+        long mismatches = 0;
+
+        for (int i = 0; i < width * depth; ++i)
+        {
+            mismatches += check("getIds", seed, x + i % width, z + i / width, expected[i], actual[i]);
+        }
+
+        return mismatches;
+    }
+
+    private static int check(String method, long seed, int x, int z, int expected, int value)
+    {
+        if (value == expected)
+            return 0;
+
+        System.err.println(method + " differs for seed " + seed + " at (" + x + ", " + z + "): expected " + expected + ", got " + value);
+        return 1;
+    }
+
+    private static <T extends IArea, C extends IExtendedNoiseRandom<T>> IAreaFactory<T> createFactory(LongFunction<C> contextFactory)
+    {
+        IAreaFactory<T> factory = SourceLayer.INSTANCE.run(contextFactory.apply(1L));
+        factory = ZoomLayer.FUZZY.run(contextFactory.apply(2000L), factory);
+        factory = BOPLayerUtil.zoom(2001L, ZoomLayer.NORMAL, factory, 3, contextFactory);
+        factory = EdgeLayer.INSTANCE.run(contextFactory.apply(100L), factory);
+
+        IAreaFactory<T> shared = BOPLayerUtil.share(factory);
+        IAreaFactory<T> smoothed = SmoothLayer.INSTANCE.run(contextFactory.apply(1000L), BOPLayerUtil.zoom(1000L, ZoomLayer.NORMAL, shared, 2, contextFactory));
+        IAreaFactory<T> zoomed = BOPLayerUtil.zoom(1000L, ZoomLayer.NORMAL, shared, 2, contextFactory);
+        factory = MixLayer.INSTANCE.run(contextFactory.apply(100L), smoothed, zoomed);
+
+        return BOPLayerUtil.zoom(1000L, ZoomLayer.NORMAL, factory, 2, contextFactory);
+    }
+
+    enum SourceLayer implements IAreaTransformer0
+    {
+        INSTANCE;
+
+        @Override
+        public int applyPixel(INoiseRandom context, int x, int z)
+        {
+            return context.nextRandom(6);
+        }
+    }
+
+    // Changes some pixels where neighbours differ, much like the shore and edge layers
+    enum EdgeLayer implements ICastleStreamTransformer
+    {
+        INSTANCE;
+
+        @Override
+        public int apply(INoiseRandom context, int north, int east, int south, int west, int center)
+        {
+            if (north == center && east == center && south == center && west == center)
+                return center;
+
+            return context.nextRandom(3) == 0 ? Math.max(Math.max(north, south), Math.max(east, west)) : center + 6;
+        }
+    }
+
+    enum MixLayer implements IAreaTransformer2, IDimOffset0Transformer
+    {
+        INSTANCE;
+
+        @Override
+        public int applyPixel(INoiseRandom context, IArea area1, IArea area2, int x, int z)
+        {
+            int first = area1.get(x, z);
+            int second = area2.get(x, z);
+            return first == second ? first : first * 16 + second;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.dev;
+
+import biomesoplenty.common.world.layer.traits.ICastleStreamTransformer;
+import biomesoplenty.common.world.layer.traits.IRegionTransformer;
+import net.minecraft.world.gen.IExtendedNoiseRandom;
+import net.minecraft.world.gen.INoiseRandom;
+import net.minecraft.world.gen.ImprovedNoiseGenerator;
+import net.minecraft.world.gen.LazyAreaLayerContext;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
+
+import java.util.Random;
+
+/***
+ * Checks castle layers streamed through ICastleStreamTransformer against the plain per-pixel reads of
+ * ICastleTransformer, which is what the shore and edge layers did before streaming. Regions are read row
+ * by row, column by column, in a random order and through applyRegion, so every path through the row
+ * windows is exercised. Run with gradlew checkLayerStreams.
+ */
+public class LayerStreamCheck
+{
+    private static final long SEED = 8675309L;
+    private static final long SEED_MODIFIER = 1000L;
+    // Offsets from the origin, including negative and distant regions, with sizes which aren't multiples of the window width
+    private static final int[][] REGIONS = { { 0, 0, 16, 16 }, { -37, -23, 37, 29 }, { 5, -3, 1, 40 }, { -3, 5, 40, 1 }, { (1 << 20) - 9, -(1 << 20) + 3, 53, 47 } };
+
+    private static final ICastleStreamTransformer TRANSFORMER = MixLayer.INSTANCE;
+
+    public static void main(String[] args)
+    {
+        CheckContext context = new CheckContext();
+        IArea parent = (x, z) -> Math.floorMod((x * 73428767) ^ (z * 91227581) ^ (x * z), 7);
+        int mismatches = 0;
+
+        for (int[] region : REGIONS)
+        {
+            int x = region[0];
+            int z = region[1];
+            int width = region[2];
+            int depth = region[3];
+            int[] expected = new int[width * depth];
+
+            for (int dz = 0; dz < depth; ++dz)
+            {
+                for (int dx = 0; dx < width; ++dx)
+                {
+                    context.initRandom((long)(x + dx), (long)(z + dz));
+                    expected[dx + dz * width] = TRANSFORMER.applyPixel(context, parent, x + dx, z + dz);
+                }
+            }
+
+            mismatches += checkRows(context, parent, expected, x, z, width, depth);
+            mismatches += checkColumns(context, parent, expected, x, z, width, depth);
+            mismatches += checkShuffled(context, parent, expected, x, z, width, depth);
+            mismatches += checkRegion(context, parent, expected, x, z, width, depth);
+        }
+
+        if (mismatches > 0)
+        {
+            System.err.println(mismatches + " mismatches");
+            System.exit(1);
+        }
+
+        System.out.println("Streamed castle layers match per-pixel reads in all " + REGIONS.length + " regions");
+    }
+
+    private static int check(String method, int x, int z, int expected, int value)
+    {
+        if (value == expected)
+            return 0;
+
+        System.err.println(method + " differs at (" + x + ", " + z + "): expected " + expected + ", got " + value);
+        return 1;
+    }
+
+    // Every read makes a fresh stream, so the windows start out empty each time
+    private static IArea stream(CheckContext context, IArea parent)
+    {
+        return TRANSFORMER.run(context, () -> new Result(parent::get)).make();
+    }
+
+    private static int checkRows(CheckContext context, IArea parent, int[] expected, int x, int z, int width, int depth)
+    {
+        IArea area = stream(context, parent);
+        int mismatches = 0;
+
+        for (int dz = 0; dz < depth; ++dz)
+        {
+            for (int dx = 0; dx < width; ++dx)
+            {
+                mismatches += check("row read", x + dx, z + dz, expected[dx + dz * width], area.get(x + dx, z + dz));
+            }
+        }
+
+        return mismatches;
+    }
+
+    // Walking down a column moves each window one row at a time
+    private static int checkColumns(CheckContext context, IArea parent, int[] expected, int x, int z, int width, int depth)
+    {
+        IArea area = stream(context, parent);
+        int mismatches = 0;
+
+        for (int dx = 0; dx < width; ++dx)
+        {
+            for (int dz = 0; dz < depth; ++dz)
+            {
+                mismatches += check("column read", x + dx, z + dz, expected[dx + dz * width], area.get(x + dx, z + dz));
+            }
+        }
+
+        return mismatches;
+    }
+
+    // Random jumps make the windows reset and collide
+    private static int checkShuffled(CheckContext context, IArea parent, int[] expected, int x, int z, int width, int depth)
+    {
+        IArea area = stream(context, parent);
+        int[] order = new int[width * depth];
+        Random random = new Random(SEED);
+        int mismatches = 0;
+
+        for (int i = 0; i < order.length; ++i) order[i] = i;
+
+        for (int i = order.length - 1; i > 0; --i)
+        {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        for (int i : order)
+        {
+            int dx = i % width;
+            int dz = i / width;
+            mismatches += check("shuffled read", x + dx, z + dz, expected[i], area.get(x + dx, z + dz));
+        }
+
+        return mismatches;
+    }
+
+    private static int checkRegion(CheckContext context, IArea parent, int[] expected, int x, int z, int width, int depth)
+    {
+        Result area = (Result)stream(context, parent);
+        int[] out = new int[width * depth];
+        int mismatches = 0;
+
+        ((IRegionTransformer)area.transformer).applyRegion(out, x, z, width, depth);
+
+        for (int i = 0; i < out.length; ++i)
+        {
+            mismatches += check("applyRegion", x + i % width, z + i / width, expected[i], out[i]);
+        }
+
+        return mismatches;
+    }
+
+    // Depends on every neighbour and on the random, so any read from the wrong position shows up
+    enum MixLayer implements ICastleStreamTransformer
+    {
+        INSTANCE;
+
+        @Override
+        public int apply(INoiseRandom context, int north, int east, int south, int west, int center)
+        {
+            return center * 31 + north * 17 + east * 7 + south * 3 + west + context.nextRandom(5) * 1000;
+        }
+    }
+
+    // Evaluates its transformer on every read, with no cache to hide what the stream itself returns
+    private static class Result implements IArea
+    {
+        private final IPixelTransformer transformer;
+
+        private Result(IPixelTransformer transformer)
+        {
+            this.transformer = transformer;
+        }
+
+        @Override
+        public int get(int x, int z)
+        {
+            return this.transformer.apply(x, z);
+        }
+    }
+
+    private static class CheckContext implements IExtendedNoiseRandom<Result>
+    {
+        private final LazyAreaLayerContext random = new LazyAreaLayerContext(1, SEED, SEED_MODIFIER);
+
+        @Override
+        public Result createResult(IPixelTransformer transformer)
+        {
+            return new Result(transformer);
+        }
+
+        @Override
+        public Result createResult(IPixelTransformer transformer, Result area)
+        {
+            return new Result(transformer);
+        }
+
+        @Override
+        public Result createResult(IPixelTransformer transformer, Result area1, Result area2)
+        {
+            return new Result(transformer);
+        }
+
+        @Override
+        public void initRandom(long x, long z)
+        {
+            this.random.initRandom(x, z);
+        }
+
+        @Override
+        public int nextRandom(int bound)
+        {
+            return this.random.nextRandom(bound);
+        }
+
+        @Override
+        public ImprovedNoiseGenerator getBiomeNoise()
+        {
+            return this.random.getBiomeNoise();
+        }
+    }
+}
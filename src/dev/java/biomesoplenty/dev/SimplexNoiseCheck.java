@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.dev;
+
+import biomesoplenty.common.world.SimplexNoise;
+
+/***
+ * Checks SimplexNoise against values captured from the original implementation, which looked gradients up
+ * through an array of Grad objects. Every sampling method must reproduce them bit for bit, or existing
+ * worlds would get different temperatures and rainfall. A seeded instance is also checked against values of
+ * its own. Run with gradlew checkSimplexNoise.
+ */
+public class SimplexNoiseCheck
+{
+    private static final long SEED = 8675309L;
+    // Created first, so that the default checks also show seeding leaves the original permutation alone
+    private static final SimplexNoise SEEDED = new SimplexNoise(SEED);
+    private static final SimplexNoise NOISE = new SimplexNoise();
+
+    // Double.doubleToLongBits of the original SimplexNoise.noise at each point
+    private static final long[] GOLDEN = {
+        0xBFB8156CE0233068L, 0x3FCF76BD55D5F12AL, 0x3FEA3D18C3CE81D4L, 0x3FD0A4D2C521F22EL,
+        0x3FE24D6BA0CBC850L, 0xBFDF3CE674A3ED71L, 0xBFCF253491FF4DC3L, 0x3FE130412840CA27L,
+        0x3FD7DD134A82A899L, 0xBFD111070CB39037L, 0x3FDB4305FFBACEAEL, 0xBF79F3F4FD552B8BL,
+        0x3FAD36F4C4781A3CL, 0xBFAC977F5D827E2EL, 0xBFE1796B4925CB9FL, 0xBFA21878C3D1831EL,
+        0x3FC66ACF50A825CAL, 0xBFD1BF861CFADF3CL, 0x3FD57271040BE4DAL, 0xBFB2B3A2FDBC1FC5L,
+        0x3FDA56B8F188C021L, 0xBFD8661899C78EE5L, 0xBFD781BEA789A2E9L, 0x3FC094F8C941740EL,
+        0xBFC7A5A29032392CL, 0xBFE5F7D54AD3D7DCL, 0x3FE12D105FE798F4L, 0x3FD6DC132172E9B7L,
+        0xBFCCCF9C13AA15F1L, 0xBFB916CFFDA74C69L, 0xBFC24002019C8460L, 0xBFC2E63EFF8A7BE8L,
+        0xBFB4734776E511A2L, 0x3F767D437F55D641L, 0xBF73EFA27F07D219L, 0xBFB314A28C91F50FL,
+        0xBFD09587235AECB2L, 0x3FE5289E5D651C20L, 0x3FBE4E99BEEF88D3L, 0x3FE0115AE3437887L,
+        0xBFDD1F1E5AAB50EEL, 0x3FC396AED8949725L, 0x3FAB4BE478E591BBL, 0xBFDE8B73554356F8L,
+        0xBFD5EF1FDA314A99L, 0xBFCF9E7CF28A1923L, 0x3FDFB38AF324A9BDL, 0x3FDCF7D092D99727L,
+        0xBFD763A754F2662EL, 0xBF801F148CB00804L, 0xBFD223ECD7F46572L, 0x3FE557250BFE842FL,
+        0x3FD45FC1E58BBD73L, 0xBFDED6CC6C547B53L, 0x3FB75C219CAD35DEL, 0xBFD53D411246F3B4L,
+        0x3FD88314CB035BDBL, 0x3FDBFAFD9C0651F2L, 0xBFBCE71CB9C261EEL, 0x3FE14ECFA7F01B68L,
+        0x3FCBA7E149434E58L, 0x3FC9144D5CDD7CBDL, 0x3FE8C1A910C19828L, 0xBFD2CDCF4326E6DFL
+    };
+
+    // Double.doubleToLongBits of new SimplexNoise(SEED).sample at the first points
+    private static final long[] SEEDED_GOLDEN = {
+        0xBFD8B0E3089794C6L, 0x3FAB9375FE7859D1L, 0xBFC78BEA2C8EEA5DL, 0xBFE4BFE43DA8911BL,
+        0xBFE5F8B2A8D5E2B3L, 0xBFD68B09AF922CB5L, 0x3FD82D7F22B99430L, 0xBFE3B3F60E5DCD77L,
+        0x3FD45F5B33EE5533L, 0x3FD111070CB39037L, 0x3FDE824EA200F791L, 0x3FA0B26827BDA46FL,
+        0x3FAD36F4C4781A3CL, 0xBFB666B03888C594L, 0xBFE19C701D3E679CL, 0xBFE5E4AB9E7BE570L
+    };
+
+    public static void main(String[] args)
+    {
+        int mismatches = checkSeeded();
+        double[] row = new double[1];
+
+        for (int k = 0; k < GOLDEN.length; ++k)
+        {
+            double x = getX(k);
+            double y = getY(k);
+
+            mismatches += check("noise", k, GOLDEN[k], SimplexNoise.noise(x, y));
+            mismatches += check("sample", k, GOLDEN[k], NOISE.sample(x, y));
+
+            // Scale 1 with the coordinate as the offset reproduces the point exactly
+            NOISE.fillRow(row, 0, 0, 0, 1, x, y, 1.0D);
+            mismatches += check("fillRow", k, GOLDEN[k], row[0]);
+        }
+
+        mismatches += checkTile();
+
+        if (mismatches > 0)
+        {
+            System.err.println(mismatches + " mismatches");
+            System.exit(1);
+        }
+
+        System.out.println("SimplexNoise matches the original implementation at all " + GOLDEN.length + " points");
+    }
+
+    private static int check(String method, int k, long expected, double value)
+    {
+        if (Double.doubleToLongBits(value) == expected)
+            return 0;
+
+        System.err.println(method + " differs at (" + getX(k) + ", " + getY(k) + "): expected " + Double.longBitsToDouble(expected) + ", got " + value);
+        return 1;
+    }
+
+    // A seed must always give the same field, and a different one to the original permutation
+    private static int checkSeeded()
+    {
+        SimplexNoise again = new SimplexNoise(SEED);
+        int mismatches = 0;
+        boolean differs = false;
+
+        for (int k = 0; k < SEEDED_GOLDEN.length; ++k)
+        {
+            double value = SEEDED.sample(getX(k), getY(k));
+            mismatches += check("seeded sample", k, SEEDED_GOLDEN[k], value);
+            mismatches += check("repeated seeded sample", k, SEEDED_GOLDEN[k], again.sample(getX(k), getY(k)));
+            differs |= Double.doubleToLongBits(value) != GOLDEN[k];
+        }
+
+        if (!differs)
+        {
+            System.err.println("Seed " + SEED + " gives the same values as the original permutation");
+            mismatches++;
+        }
+
+        return mismatches;
+    }
+
+    // Tiles must sample the same coordinates as a caller visiting each position
+    private static int checkTile()
+    {
+        int size = 16;
+        double xOffset = 0.123456D;
+        double zOffset = 0.246912D;
+        double scale = 0.1D;
+        double[] tile = new double[size * size];
+        int mismatches = 0;
+
+        NOISE.fillTile(tile, -50000, 70000, size, size, xOffset, zOffset, scale);
+
+        for (int dz = 0; dz < size; ++dz)
+        {
+            for (int dx = 0; dx < size; ++dx)
+            {
+                double expected = SimplexNoise.noise((-50000 + dx + xOffset) * scale, (70000 + dz + zOffset) * scale);
+
+                if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(tile[dx + dz * size]))
+                {
+                    System.err.println("fillTile differs at (" + dx + ", " + dz + ")");
+                    mismatches++;
+                }
+            }
+        }
+
+        return mismatches;
+    }
+
+    private static double getX(int k)
+    {
+        return (k * 7919 - 250000) * 0.0123D + 0.371D;
+    }
+
+    private static double getY(int k)
+    {
+        return (k * 104729 - 5000000) * 0.00771D - 0.25D;
+    }
+}
@@ -19,7 +19,7 @@ import net.minecraft.world.gen.INoiseRandom;
 import net.minecraftforge.common.BiomeManager.BiomeType;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -48,6 +48,10 @@ public enum BOPClimates
     private ArrayList<WeightedBiomeEntry> landBiomes = Lists.newArrayList();
     private ArrayList<WeightedBiomeEntry> islandBiomes = Lists.newArrayList();
 
+    // Frozen copies of the entries used for sampling, rebuilt after any change
+    private volatile WeightedBiomeTable landBiomeTable;
+    private volatile WeightedBiomeTable islandBiomeTable;
+
     BOPClimates(BiomeType biomeType)
     {
         this.biomeType = biomeType;
@@ -60,8 +64,12 @@ public enum BOPClimates
 
     public BOPClimates addBiome(WeightedBiomeEntry biomeEntry)
     {
-        this.totalBiomesWeight += biomeEntry.weight;
-        this.landBiomes.add(biomeEntry);
+        synchronized (this)
+        {
+            this.totalBiomesWeight += biomeEntry.weight;
+            this.landBiomes.add(biomeEntry);
+            this.landBiomeTable = null;
+        }
         return this;
     }
 
@@ -72,43 +80,65 @@ public enum BOPClimates
 
     public BOPClimates addIslandBiome(WeightedBiomeEntry biomeEntry)
     {
-        this.totalIslandBiomesWeight += biomeEntry.weight;
-        this.islandBiomes.add(biomeEntry);
+        synchronized (this)
+        {
+            this.totalIslandBiomesWeight += biomeEntry.weight;
+            this.islandBiomes.add(biomeEntry);
+            this.islandBiomeTable = null;
+        }
         return this;
     }
 
     public Biome getRandomBiome(INoiseRandom context, Biome fallback)
     {
-        if (this.totalBiomesWeight == 0)
-            return fallback;
+        return this.getLandBiomeTable().getRandomBiome(context, fallback);
+    }
 
-        int weight = context.nextRandom(this.totalBiomesWeight);
-        Iterator<WeightedBiomeEntry> iterator = this.landBiomes.iterator();
-        WeightedBiomeEntry item;
-        do
+    public Biome getRandomIslandBiome(INoiseRandom context, Biome fallback)
+    {
+        return this.getIslandBiomeTable().getRandomBiome(context, fallback);
+    }
+
+    private WeightedBiomeTable getLandBiomeTable()
+    {
+        WeightedBiomeTable table = this.landBiomeTable;
+
+        if (table == null)
         {
-            item = iterator.next();
-            weight -= item.weight;
+            synchronized (this)
+            {
+                table = this.landBiomeTable;
+                if (table == null) table = this.landBiomeTable = new WeightedBiomeTable(this.landBiomes, this.totalBiomesWeight);
+            }
         }
-        while (weight >= 0);
-        return item.biome;
+
+        return table;
     }
 
-    public Biome getRandomIslandBiome(INoiseRandom context, Biome fallback)
+    private WeightedBiomeTable getIslandBiomeTable()
     {
-        if (this.totalIslandBiomesWeight == 0)
-            return fallback;
+        WeightedBiomeTable table = this.islandBiomeTable;
 
-        int weight = context.nextRandom(this.totalIslandBiomesWeight);
-        Iterator<WeightedBiomeEntry> iterator = this.islandBiomes.iterator();
-        WeightedBiomeEntry item;
-        do
+        if (table == null)
         {
-            item = iterator.next();
-            weight -= item.weight;
+            synchronized (this)
+            {
+                table = this.islandBiomeTable;
+                if (table == null) table = this.islandBiomeTable = new WeightedBiomeTable(this.islandBiomes, this.totalIslandBiomesWeight);
+            }
+        }
+
+        return table;
+    }
+
+    // Builds the sampling tables of every climate up front, to be called once registration has finished
+    public static void freeze()
+    {
+        for (BOPClimates climate : BOPClimates.values())
+        {
+            climate.getLandBiomeTable();
+            climate.getIslandBiomeTable();
         }
-        while (weight >= 0);
-        return item.biome;
     }
 
     public Biome getRandomOceanBiome(INoiseRandom context, boolean deep)
@@ -118,15 +148,15 @@ public enum BOPClimates
 
     public ImmutableList<WeightedBiomeEntry> getLandBiomes()
     {
-        return this.landBiomes.isEmpty() ? ImmutableList.of(this.getDefaultWeightedBiomeEntry()) : ImmutableList.copyOf(this.landBiomes);
+        return this.getLandBiomeTable().entries;
     }
 
     public ImmutableList<WeightedBiomeEntry> getIslandBiomes()
     {
-        return this.islandBiomes.isEmpty() ? ImmutableList.of(this.getDefaultWeightedBiomeEntry()) : ImmutableList.copyOf(this.islandBiomes);
+        return this.getIslandBiomeTable().entries;
     }
 
-    private WeightedBiomeEntry getDefaultWeightedBiomeEntry()
+    private static WeightedBiomeEntry getDefaultWeightedBiomeEntry()
     {
         return new WeightedBiomeEntry(100, Biomes.OCEAN);
     }
@@ -181,6 +211,80 @@ public enum BOPClimates
         return ImmutableSet.copyOf(set);
     }
 
+    /***
+     * An immutable snapshot of a climate's entries. Sampling draws the same random number as a linear scan
+     * over the entries and maps it to the same biome, so existing seeds generate identically.
+     */
+    private static class WeightedBiomeTable
+    {
+        // Beyond this total weight a binary search is used instead of a direct lookup
+        private static final int MAX_LOOKUP_SIZE = 4096;
+
+        private final ImmutableList<WeightedBiomeEntry> entries;
+        private final Biome[] biomes;
+        private final int totalWeight;
+        private final int[] lookup;
+        private final int[] cumulativeWeights;
+
+        private WeightedBiomeTable(List<WeightedBiomeEntry> entries, int totalWeight)
+        {
+            this.entries = entries.isEmpty() ? ImmutableList.of(getDefaultWeightedBiomeEntry()) : ImmutableList.copyOf(entries);
+            this.biomes = new Biome[entries.size()];
+            this.totalWeight = totalWeight;
+            this.cumulativeWeights = new int[entries.size()];
+
+            int cumulativeWeight = 0;
+            for (int i = 0; i < entries.size(); ++i)
+            {
+                cumulativeWeight += entries.get(i).weight;
+                this.biomes[i] = entries.get(i).biome;
+                this.cumulativeWeights[i] = cumulativeWeight;
+            }
+
+            if (totalWeight > 0 && totalWeight <= MAX_LOOKUP_SIZE)
+            {
+                this.lookup = new int[totalWeight];
+
+                for (int weight = 0, i = 0; weight < totalWeight; ++weight)
+                {
+                    while (this.cumulativeWeights[i] <= weight) ++i;
+                    this.lookup[weight] = i;
+                }
+            }
+            else
+            {
+                this.lookup = null;
+            }
+        }
+
+        private Biome getRandomBiome(INoiseRandom context, Biome fallback)
+        {
+            if (this.totalWeight == 0)
+                return fallback;
+
+            int weight = context.nextRandom(this.totalWeight);
+
+            if (this.lookup != null)
+                return this.biomes[this.lookup[weight]];
+
+            // Find the first entry whose cumulative weight exceeds the one drawn
+            int low = 0;
+            int high = this.cumulativeWeights.length - 1;
+
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+
+                if (this.cumulativeWeights[mid] > weight)
+                    high = mid;
+                else
+                    low = mid + 1;
+            }
+
+            return this.biomes[low];
+        }
+    }
+
     public static class WeightedBiomeEntry
     {
         public final int weight;
@@ -9,7 +9,11 @@ package biomesoplenty.client.util;
 
 import biomesoplenty.common.world.BOPLayerUtil;
 import biomesoplenty.common.world.BOPOverworldGenSettings;
+import biomesoplenty.common.world.layer.BiomeEdgeRules;
+import biomesoplenty.common.world.layer.BiomeTraits;
 import biomesoplenty.common.world.layer.traits.IBOPContextExtended;
+import biomesoplenty.common.world.layer.traits.LayerCacheManager;
+import biomesoplenty.common.world.layer.traits.LazyAreaBOP;
 import biomesoplenty.common.world.layer.traits.LazyAreaLayerContextBOP;
 import biomesoplenty.init.ModBiomes;
 import net.minecraft.util.math.BlockPos;
@@ -21,7 +25,6 @@ import net.minecraft.world.biome.provider.BiomeProviderType;
 import net.minecraft.world.biome.provider.OverworldBiomeProviderSettings;
 import net.minecraft.world.gen.OverworldGenSettings;
 import net.minecraft.world.gen.area.IAreaFactory;
-import net.minecraft.world.gen.area.LazyArea;
 import net.minecraft.world.storage.WorldInfo;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWVidMode;
@@ -30,6 +33,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.IntBuffer;
+import java.util.Collections;
 import java.util.function.LongFunction;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -163,17 +167,20 @@ public class GenLayerVisualizer
             OverworldBiomeProviderSettings settingsProvider = BiomeProviderType.VANILLA_LAYERED.createSettings(new WorldInfo(new WorldSettings(0, GameType.NOT_SET, true, false, ModBiomes.worldType), "MpServer"));
             OverworldGenSettings settings = settingsProvider.getGeneratorSettings();
 
-            LongFunction<IBOPContextExtended<LazyArea>> contextFactory = (seedModifier) -> {
-                return new LazyAreaLayerContextBOP(1, 0, seedModifier);
+            // The visualizer runs outside of a game, so the generation config isn't available
+            LayerCacheManager cacheManager = new LayerCacheManager(25, 1024, Collections.emptyMap(), false, 0);
+            BiomeTraits biomeTraits = new BiomeTraits();
+            LongFunction<IBOPContextExtended<LazyAreaBOP>> contextFactory = (seedModifier) -> {
+                return new LazyAreaLayerContextBOP(cacheManager, biomeTraits, 0, seedModifier);
             };
 
-            IAreaFactory<LazyArea> landAreaFactory = BOPLayerUtil.createInitialLandAndSeaFactory(contextFactory);
-            IAreaFactory<LazyArea> climateFactory = BOPLayerUtil.createClimateFactory(contextFactory, new BOPOverworldGenSettings());
-            IAreaFactory<LazyArea> biomeAreaFactory = BOPLayerUtil.createBiomeFactory(landAreaFactory, climateFactory, contextFactory);
+            IAreaFactory<LazyAreaBOP> landAreaFactory = BOPLayerUtil.createInitialLandAndSeaFactory(contextFactory);
+            IAreaFactory<LazyAreaBOP> climateFactory = BOPLayerUtil.createClimateFactory(contextFactory, new BOPOverworldGenSettings());
+            IAreaFactory<LazyAreaBOP> biomeAreaFactory = BOPLayerUtil.createBiomeFactory(landAreaFactory, climateFactory, BiomeEdgeRules.createDefault(), contextFactory);
 
-            //IAreaFactory<LazyArea> biomeAreaFactory = BOPLayerUtil.createAreaFactories(WorldType.DEFAULT, settings, contextFactory).get(0);
+            //IAreaFactory<LazyAreaBOP> biomeAreaFactory = BOPLayerUtil.createAreaFactories(WorldType.DEFAULT, settings, contextFactory).get(0);
 
-            LazyArea area = biomeAreaFactory.make();
+            LazyAreaBOP area = biomeAreaFactory.make();
 
             int startX = 5000;
             int startZ = 10000;
@@ -313,7 +313,7 @@ public class BiomeRegistry
         return bopConfigPath.toFile();
     }
 
-    private static File getConfigFile()
+    public static File getConfigFile()
     {
         return new File(getConfigDirFile(), CONFIG_FILE_NAME);
     }
@@ -19,6 +19,11 @@ public class BOPCommand
                 LiteralArgumentBuilder.<CommandSource>literal("bop")
                         .requires(cs->cs.hasPermission(2))
                         .then(CommandTpBiome.register())
+                        .then(CommandBiomeStats.register())
+                        .then(CommandPregen.register())
+                        .then(CommandCheckLayers.register())
+                        .then(CommandJobs.registerJobs())
+                        .then(CommandJobs.registerCancel())
         );
     }
 }
\ No newline at end of file
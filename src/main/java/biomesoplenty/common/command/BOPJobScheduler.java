@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.command;
+
+import biomesoplenty.core.BiomesOPlenty;
+import biomesoplenty.init.ModConfig;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import net.minecraft.command.CommandSource;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TranslationTextComponent;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+/***
+ * Runs long /bop subcommands off the server thread. Jobs share a small pool of daemon threads and a bounded
+ * queue, each command source may only have a few jobs at once, and jobs may be listed and cancelled with
+ * /bop jobs and /bop cancel.
+ *
+ * Jobs must not touch the world from their own thread. Anything which does, including sending feedback,
+ * is handed to the server thread with runOnServer.
+ */
+public class BOPJobScheduler
+{
+    private static final DynamicCommandExceptionType TOO_MANY_JOBS_EXCEPTION = new DynamicCommandExceptionType((limit) -> new TranslationTextComponent("commands.biomesoplenty.jobs.limit", limit));
+    private static final SimpleCommandExceptionType QUEUE_FULL_EXCEPTION = new SimpleCommandExceptionType(new TranslationTextComponent("commands.biomesoplenty.jobs.full"));
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+    private static final Map<Integer, Job> JOBS = new ConcurrentSkipListMap<>();
+    private static ThreadPoolExecutor executor;
+
+    /***
+     * Queues a task on behalf of a command source, failing if it already has too many jobs or the queue is full.
+     */
+    public static synchronized Job submit(CommandSource source, String description, Task task) throws CommandSyntaxException
+    {
+        String owner = getOwner(source);
+        int limit = ModConfig.GenerationConfig.maxJobsPerPlayer.get();
+        long owned = JOBS.values().stream().filter((job) -> job.owner.equals(owner)).count();
+
+        if (owned >= limit)
+            throw TOO_MANY_JOBS_EXCEPTION.create(limit);
+
+        Job job = new Job(NEXT_ID.getAndIncrement(), description, owner, source);
+
+        try
+        {
+            JOBS.put(job.id, job);
+            job.future = getExecutor().submit(() -> job.run(task));
+        }
+        catch (RejectedExecutionException e)
+        {
+            JOBS.remove(job.id);
+            throw QUEUE_FULL_EXCEPTION.create();
+        }
+
+        return job;
+    }
+
+    // Every queued and running job, in the order they were submitted
+    public static Collection<Job> getJobs()
+    {
+        return ImmutableList.copyOf(JOBS.values());
+    }
+
+    @Nullable
+    public static Job getJob(int id)
+    {
+        return JOBS.get(id);
+    }
+
+    public static void cancelAll()
+    {
+        for (Job job : JOBS.values())
+        {
+            job.cancel();
+        }
+    }
+
+    // Players are told apart by their uuids, anything else by its name
+    private static String getOwner(CommandSource source)
+    {
+        Entity entity = source.getEntity();
+        return entity != null ? entity.getStringUUID() : source.getTextName();
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            int threads = ModConfig.GenerationConfig.jobThreads.get();
+            executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(ModConfig.GenerationConfig.maxQueuedJobs.get()),
+                    new ThreadFactoryBuilder().setNameFormat("BOP Job #%d").setDaemon(true).build());
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        return executor;
+    }
+
+    public interface Task
+    {
+        void run(Job job) throws Exception;
+    }
+
+    public enum State
+    {
+        QUEUED, RUNNING, CANCELLED
+    }
+
+    public static class Job
+    {
+        private final int id;
+        private final String description;
+        private final String owner;
+        private final CommandSource source;
+        private final long submitTime = System.nanoTime();
+        private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+
+        private volatile State state = State.QUEUED;
+        private volatile long startTime;
+        private volatile DoubleSupplier progress = () -> 0.0D;
+        private volatile Future<?> future;
+
+        private Job(int id, String description, String owner, CommandSource source)
+        {
+            this.id = id;
+            this.description = description;
+            this.owner = owner;
+            this.source = source;
+        }
+
+        private void run(Task task)
+        {
+            try
+            {
+                if (this.state == State.CANCELLED) return;
+
+                this.state = State.RUNNING;
+                this.startTime = System.nanoTime();
+                task.run(this);
+            }
+            catch (InterruptedException e)
+            {
+                // Cancelled while waiting
+            }
+            catch (Exception e)
+            {
+                BiomesOPlenty.logger.error("Job #" + this.id + " (" + this.description + ") failed", e);
+                this.runOnServer(() -> this.source.sendFailure(new TranslationTextComponent("commands.biomesoplenty.jobs.failed", this.id, e.toString())));
+            }
+            finally
+            {
+                JOBS.remove(this.id);
+            }
+        }
+
+        /***
+         * Stops the job as soon as it next checks isCancelled, or when it's interrupted.
+         */
+        public void cancel()
+        {
+            if (this.state == State.CANCELLED) return;
+
+            this.state = State.CANCELLED;
+            JOBS.remove(this.id);
+
+            for (Runnable listener : this.cancelListeners)
+            {
+                listener.run();
+            }
+
+            Future<?> future = this.future;
+            if (future != null) future.cancel(true);
+        }
+
+        public boolean isCancelled()
+        {
+            return this.state == State.CANCELLED;
+        }
+
+        /***
+         * Runs listener when the job is cancelled, or immediately if it already has been.
+         */
+        public void onCancel(Runnable listener)
+        {
+            this.cancelListeners.add(listener);
+            if (this.isCancelled()) listener.run();
+        }
+
+        // Queues an action on the server thread, which is skipped if the job is cancelled first
+        public void runOnServer(Runnable action)
+        {
+            this.source.getServer().execute(() ->
+            {
+                if (!this.isCancelled()) action.run();
+            });
+        }
+
+        public void sendSuccess(ITextComponent message, boolean broadcast)
+        {
+            this.runOnServer(() -> this.source.sendSuccess(message, broadcast));
+        }
+
+        public void setProgress(double progress)
+        {
+            this.progress = () -> progress;
+        }
+
+        public void setProgress(DoubleSupplier progress)
+        {
+            this.progress = progress;
+        }
+
+        // Between 0 and 1
+        public double getProgress()
+        {
+            return Math.max(0.0D, Math.min(1.0D, this.progress.getAsDouble()));
+        }
+
+        public int getId()
+        {
+            return this.id;
+        }
+
+        public String getDescription()
+        {
+            return this.description;
+        }
+
+        public State getState()
+        {
+            return this.state;
+        }
+
+        public CommandSource getSource()
+        {
+            return this.source;
+        }
+
+        // Seconds since the job started running, or since it was submitted if it's still queued
+        public long getElapsedSeconds()
+        {
+            long start = this.state == State.QUEUED ? this.submitTime : this.startTime;
+            return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        }
+    }
+}
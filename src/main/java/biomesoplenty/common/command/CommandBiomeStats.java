@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.command;
+
+import biomesoplenty.api.enums.BOPClimates;
+import biomesoplenty.common.util.biome.BiomeSampler;
+import biomesoplenty.init.ModBiomes;
+import com.google.common.collect.Maps;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.server.ServerWorld;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class CommandBiomeStats
+{
+    // Larger samples take minutes
+    private static final long MAX_SAMPLES = 1L << 26;
+    private static final DynamicCommandExceptionType TOO_MANY_SAMPLES_EXCEPTION = new DynamicCommandExceptionType((samples) -> new TranslationTextComponent("commands.biomesoplenty.biomestats.too_many", samples));
+
+    static ArgumentBuilder<CommandSource, ?> register()
+    {
+        return Commands.literal("biomestats")
+                .then(Commands.argument("radius", IntegerArgumentType.integer(16, 1000000))
+                        .executes(ctx -> sampleBiomes(ctx, 16, false))
+                        .then(Commands.argument("resolution", IntegerArgumentType.integer(4, 65536))
+                                .executes(ctx -> sampleBiomes(ctx, IntegerArgumentType.getInteger(ctx, "resolution"), false))
+                                .then(Commands.literal("csv")
+                                        .executes(ctx -> sampleBiomes(ctx, IntegerArgumentType.getInteger(ctx, "resolution"), true)))));
+    }
+
+    private static int sampleBiomes(CommandContext<CommandSource> ctx, int resolution, boolean csv) throws CommandSyntaxException
+    {
+        CommandSource source = ctx.getSource();
+        ServerWorld world = source.getLevel();
+        int radius = IntegerArgumentType.getInteger(ctx, "radius");
+        long samples = BiomeSampler.getSampleCount(radius, resolution);
+
+        if (samples > MAX_SAMPLES)
+            throw TOO_MANY_SAMPLES_EXCEPTION.create(samples);
+
+        int centerX = MathHelper.floor(source.getPosition().x);
+        int centerZ = MathHelper.floor(source.getPosition().z);
+        File csvDirectory = csv ? new File(world.getDimension().getType().getStorageFolder(world.getLevelStorage().getFolder()), "biomesoplenty") : null;
+        BiomeSampler sampler = new BiomeSampler(world, centerX, centerZ, radius, resolution);
+        BOPJobScheduler.Job job = BOPJobScheduler.submit(source, "biomestats " + radius + " " + resolution, (task) -> reportBiomeStats(task, sampler, radius, resolution, centerX, centerZ, csvDirectory));
+        source.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.jobs.started", job.getId(), job.getDescription()), false);
+        return 1;
+    }
+
+    private static void reportBiomeStats(BOPJobScheduler.Job job, BiomeSampler sampler, int radius, int resolution, int centerX, int centerZ, @Nullable File csvDirectory) throws IOException
+    {
+        job.onCancel(sampler::cancel);
+        job.setProgress(sampler::getProgress);
+
+        long startTime = System.nanoTime();
+        long[] counts = sampler.sample();
+        if (counts == null) return;
+
+        double seconds = Math.max(1.0E-3D, (System.nanoTime() - startTime) / (double)TimeUnit.SECONDS.toNanos(1));
+        long total = sampler.getSamplesTaken();
+        Map<BOPClimates, Double> climateCounts = getClimateCounts(counts);
+        double unassigned = total - climateCounts.values().stream().mapToDouble(Double::doubleValue).sum();
+
+        job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.summary", total, resolution, radius, centerX, centerZ, String.format(Locale.ROOT, "%.1f", seconds), Math.round(total / seconds)), false);
+        job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.biomes"), false);
+
+        Registry.BIOME.stream().filter((biome) -> counts[Registry.BIOME.getId(biome)] > 0)
+                .sorted(Comparator.comparingLong((Biome biome) -> counts[Registry.BIOME.getId(biome)]).reversed())
+                .forEach((biome) -> job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.entry", biome.getRegistryName(), formatPercent(counts[Registry.BIOME.getId(biome)], total)), false));
+
+        job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.climates"), false);
+
+        climateCounts.entrySet().stream().filter((entry) -> entry.getValue() > 0)
+                .sorted(Map.Entry.<BOPClimates, Double>comparingByValue().reversed())
+                .forEach((entry) -> job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.entry", entry.getKey().name().toLowerCase(Locale.ROOT), formatPercent(entry.getValue(), total)), false));
+
+        if (unassigned > 0.5D)
+        {
+            job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.entry", "other", formatPercent(unassigned, total)), false);
+        }
+
+        if (csvDirectory != null)
+        {
+            File file = writeCsv(csvDirectory, counts, climateCounts, total);
+            job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.biomestats.csv", file.getPath()), false);
+        }
+    }
+
+    // Biomes which belong to several climates are split between them by weight, and sub biomes are counted towards the climates of their parents
+    private static Map<BOPClimates, Double> getClimateCounts(long[] counts)
+    {
+        Map<Integer, Map<BOPClimates, Double>> weights = Maps.newHashMap();
+
+        for (BOPClimates climate : BOPClimates.values())
+        {
+            for (BOPClimates.WeightedBiomeEntry entry : climate.getLandBiomes())
+                weights.computeIfAbsent(Registry.BIOME.getId(entry.biome), (id) -> new EnumMap<>(BOPClimates.class)).merge(climate, (double)entry.weight, Double::sum);
+
+            for (BOPClimates.WeightedBiomeEntry entry : climate.getIslandBiomes())
+                weights.computeIfAbsent(Registry.BIOME.getId(entry.biome), (id) -> new EnumMap<>(BOPClimates.class)).merge(climate, (double)entry.weight, Double::sum);
+        }
+
+        for (Map.Entry<Integer, ModBiomes.WeightedSubBiome> entry : ModBiomes.subBiomes.entries())
+        {
+            Map<BOPClimates, Double> parentWeights = weights.get(entry.getKey());
+            if (parentWeights != null) weights.putIfAbsent(Registry.BIOME.getId(entry.getValue().biome), parentWeights);
+        }
+
+        Map<BOPClimates, Double> climateCounts = new EnumMap<>(BOPClimates.class);
+
+        for (Map.Entry<Integer, Map<BOPClimates, Double>> entry : weights.entrySet())
+        {
+            long count = entry.getKey() < counts.length ? counts[entry.getKey()] : 0;
+            double totalWeight = entry.getValue().values().stream().mapToDouble(Double::doubleValue).sum();
+            if (count == 0 || totalWeight <= 0.0D) continue;
+
+            entry.getValue().forEach((climate, weight) -> climateCounts.merge(climate, count * weight / totalWeight, Double::sum));
+        }
+
+        return climateCounts;
+    }
+
+    private static File writeCsv(File directory, long[] counts, Map<BOPClimates, Double> climateCounts, long total) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+        File file = new File(directory, "biomestats-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".csv");
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)))
+        {
+            writer.println("type,name,samples,fraction");
+
+            for (Biome biome : Registry.BIOME)
+            {
+                long count = counts[Registry.BIOME.getId(biome)];
+                if (count > 0) writer.println("biome," + biome.getRegistryName() + "," + count + "," + (double)count / total);
+            }
+
+            for (Map.Entry<BOPClimates, Double> entry : climateCounts.entrySet())
+            {
+                writer.println("climate," + entry.getKey().name().toLowerCase(Locale.ROOT) + "," + String.format(Locale.ROOT, "%.1f", entry.getValue()) + "," + entry.getValue() / total);
+            }
+        }
+
+        return file;
+    }
+
+    private static String formatPercent(double count, long total)
+    {
+        return String.format(Locale.ROOT, "%.2f", count * 100.0D / total);
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.command;
+
+import biomesoplenty.common.world.BOPLayerUtil;
+import biomesoplenty.common.world.BOPOverworldGenSettings;
+import biomesoplenty.common.world.layer.LayerBOP;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.gen.GenerationSettings;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.Random;
+
+/***
+ * Checks that the lazy and tiled layer engines produce the same biomes, for the world's seed and a few
+ * fixed ones. Each seed is compared over a square around the origin and one far from it, read both as a
+ * region and a position at a time.
+ */
+public class CommandCheckLayers
+{
+    private static final long[] FIXED_SEEDS = { 0L, 1L, -1L, 8675309L, 1234567890123456789L };
+    // Far enough out for the coordinates to exercise the upper bits of the layer hashes
+    private static final int FAR_OFFSET = 1 << 20;
+    private static final int POINT_SAMPLES = 4096;
+
+    static ArgumentBuilder<CommandSource, ?> register()
+    {
+        return Commands.literal("checklayers")
+                .executes(ctx -> checkLayers(ctx, 128))
+                .then(Commands.argument("radius", IntegerArgumentType.integer(1, 4096))
+                        .executes(ctx -> checkLayers(ctx, IntegerArgumentType.getInteger(ctx, "radius"))));
+    }
+
+    private static int checkLayers(CommandContext<CommandSource> ctx, int radius) throws CommandSyntaxException
+    {
+        CommandSource source = ctx.getSource();
+        ServerWorld world = source.getLevel();
+        GenerationSettings generationSettings = world.getChunkSource().getGenerator().getSettings();
+        BOPOverworldGenSettings settings = generationSettings instanceof BOPOverworldGenSettings ? (BOPOverworldGenSettings)generationSettings : new BOPOverworldGenSettings();
+        WorldType worldType = world.getLevelData().getGeneratorType();
+        long[] seeds = new long[FIXED_SEEDS.length + 1];
+        seeds[0] = world.getSeed();
+        System.arraycopy(FIXED_SEEDS, 0, seeds, 1, FIXED_SEEDS.length);
+
+        BOPJobScheduler.Job job = BOPJobScheduler.submit(source, "checklayers " + radius, (task) ->
+        {
+            int failures = 0;
+
+            for (int i = 0; i < seeds.length && !task.isCancelled(); ++i)
+            {
+                task.setProgress((double)i / seeds.length);
+                if (!checkSeed(task, seeds[i], worldType, settings, radius)) failures++;
+            }
+
+            if (!task.isCancelled())
+            {
+                task.sendSuccess(new TranslationTextComponent(failures == 0 ? "commands.biomesoplenty.checklayers.passed" : "commands.biomesoplenty.checklayers.failed", seeds.length - failures, seeds.length), false);
+            }
+        });
+
+        source.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.jobs.started", job.getId(), job.getDescription()), false);
+        return 1;
+    }
+
+    private static boolean checkSeed(BOPJobScheduler.Job job, long seed, WorldType worldType, BOPOverworldGenSettings settings, int radius)
+    {
+        LayerBOP lazy = BOPLayerUtil.createGenLayers(seed, worldType, settings, LayerBOP.Engine.LAZY);
+        LayerBOP tiled = BOPLayerUtil.createGenLayers(seed, worldType, settings, LayerBOP.Engine.TILED);
+        int size = radius * 2;
+        long mismatches = 0;
+        long checked = 0;
+        String first = null;
+
+        for (int originX : new int[] { -radius, FAR_OFFSET - radius })
+        {
+            int[] expected = lazy.getIds(null, originX, -radius, size, size);
+            int[] actual = tiled.getIds(null, originX, -radius, size, size);
+
+            for (int i = 0; i < size * size; ++i)
+            {
+                if (expected[i] != actual[i])
+                {
+                    if (first == null) first = "(" + (originX + i % size) + ", " + (-radius + i / size) + ")";
+                    mismatches++;
+                }
+            }
+
+            checked += size * size;
+        }
+
+        // Single positions go through the tiled engine's fallback path rather than whole regions
+        Random random = new Random(seed);
+
+        for (int i = 0; i < POINT_SAMPLES; ++i)
+        {
+            int x = random.nextInt(FAR_OFFSET * 2) - FAR_OFFSET;
+            int z = random.nextInt(FAR_OFFSET * 2) - FAR_OFFSET;
+
+            if (lazy.getId(x, z) != tiled.getId(x, z))
+            {
+                if (first == null) first = "(" + x + ", " + z + ")";
+                mismatches++;
+            }
+        }
+
+        checked += POINT_SAMPLES;
+
+        if (mismatches > 0)
+        {
+            job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.checklayers.mismatch", seed, mismatches, checked, first), false);
+            return false;
+        }
+
+        job.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.checklayers.match", seed, checked), false);
+        return true;
+    }
+}
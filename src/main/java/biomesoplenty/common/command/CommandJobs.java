@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.command;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.TranslationTextComponent;
+
+import java.util.Collection;
+import java.util.Locale;
+
+public class CommandJobs
+{
+    private static final DynamicCommandExceptionType UNKNOWN_JOB_EXCEPTION = new DynamicCommandExceptionType((id) -> new TranslationTextComponent("commands.biomesoplenty.jobs.unknown", id));
+
+    static ArgumentBuilder<CommandSource, ?> registerJobs()
+    {
+        return Commands.literal("jobs")
+                .executes(ctx -> {
+                    Collection<BOPJobScheduler.Job> jobs = BOPJobScheduler.getJobs();
+
+                    if (jobs.isEmpty())
+                    {
+                        ctx.getSource().sendSuccess(new TranslationTextComponent("commands.biomesoplenty.jobs.none"), false);
+                    }
+
+                    for (BOPJobScheduler.Job job : jobs)
+                    {
+                        ctx.getSource().sendSuccess(new TranslationTextComponent("commands.biomesoplenty.jobs.entry", job.getId(), job.getDescription(), job.getSource().getTextName(), job.getState().name().toLowerCase(Locale.ROOT), Math.round(job.getProgress() * 100.0D), job.getElapsedSeconds()), false);
+                    }
+
+                    return jobs.size();
+                });
+    }
+
+    static ArgumentBuilder<CommandSource, ?> registerCancel()
+    {
+        return Commands.literal("cancel")
+                .then(Commands.argument("job", IntegerArgumentType.integer(1))
+                        .executes(ctx -> {
+                            int id = IntegerArgumentType.getInteger(ctx, "job");
+                            BOPJobScheduler.Job job = BOPJobScheduler.getJob(id);
+
+                            if (job == null)
+                                throw UNKNOWN_JOB_EXCEPTION.create(id);
+
+                            job.cancel();
+                            ctx.getSource().sendSuccess(new TranslationTextComponent("commands.biomesoplenty.jobs.cancelled", id, job.getDescription()), true);
+                            return 1;
+                        }));
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.command;
+
+import biomesoplenty.common.world.ChunkPregenerator;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.text.TranslationTextComponent;
+
+public class CommandPregen
+{
+    private static final SimpleCommandExceptionType RUNNING_EXCEPTION = new SimpleCommandExceptionType(new TranslationTextComponent("commands.biomesoplenty.pregen.running"));
+    private static final SimpleCommandExceptionType NOT_RUNNING_EXCEPTION = new SimpleCommandExceptionType(new TranslationTextComponent("commands.biomesoplenty.pregen.none"));
+
+    static ArgumentBuilder<CommandSource, ?> register()
+    {
+        RequiredArgumentBuilder<CommandSource, Integer> radius = Commands.argument("radius", IntegerArgumentType.integer(1, 100000))
+                .executes(ctx -> startPregen(ctx, ChunkPregenerator.Shape.SPIRAL));
+
+        for (ChunkPregenerator.Shape shape : ChunkPregenerator.Shape.values())
+        {
+            radius.then(Commands.literal(shape.getName()).executes(ctx -> startPregen(ctx, shape)));
+        }
+
+        return Commands.literal("pregen")
+                .then(Commands.literal("start").then(radius))
+                .then(Commands.literal("pause")
+                        .executes(ctx -> {
+                            ChunkPregenerator pregenerator = getActive(ctx.getSource());
+                            pregenerator.pause();
+                            ctx.getSource().sendSuccess(new TranslationTextComponent("commands.biomesoplenty.pregen.paused", pregenerator.getCompleted(), pregenerator.getTotal()), true);
+                            return 1;
+                        }))
+                .then(Commands.literal("resume")
+                        .executes(ctx -> {
+                            ChunkPregenerator pregenerator = getActive(ctx.getSource());
+                            pregenerator.resume(ctx.getSource());
+                            ctx.getSource().sendSuccess(new TranslationTextComponent("commands.biomesoplenty.pregen.resumed", pregenerator.getCompleted(), pregenerator.getTotal()), true);
+                            return 1;
+                        }))
+                .then(Commands.literal("stop")
+                        .executes(ctx -> {
+                            ChunkPregenerator pregenerator = getActive(ctx.getSource());
+                            pregenerator.stop();
+                            ctx.getSource().sendSuccess(new TranslationTextComponent("commands.biomesoplenty.pregen.stopped", pregenerator.getCompleted(), pregenerator.getTotal()), true);
+                            return 1;
+                        }))
+                .then(Commands.literal("status")
+                        .executes(ctx -> {
+                            getActive(ctx.getSource()).sendStatus(ctx.getSource());
+                            return 1;
+                        }));
+    }
+
+    private static int startPregen(CommandContext<CommandSource> ctx, ChunkPregenerator.Shape shape) throws CommandSyntaxException
+    {
+        CommandSource source = ctx.getSource();
+        ChunkPregenerator pregenerator = ChunkPregenerator.get(source.getLevel());
+
+        if (pregenerator == null || pregenerator.isActive())
+            throw RUNNING_EXCEPTION.create();
+
+        int centerX = MathHelper.floor(source.getPosition().x) >> 4;
+        int centerZ = MathHelper.floor(source.getPosition().z) >> 4;
+        pregenerator.start(source, shape, centerX, centerZ, IntegerArgumentType.getInteger(ctx, "radius"));
+        source.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.pregen.started", pregenerator.getTotal(), centerX, centerZ, shape.getName()), true);
+        return 1;
+    }
+
+    // Pregeneration of the source's dimension
+    private static ChunkPregenerator getActive(CommandSource source) throws CommandSyntaxException
+    {
+        ChunkPregenerator pregenerator = ChunkPregenerator.get(source.getLevel());
+
+        if (pregenerator == null || !pregenerator.isActive())
+            throw NOT_RUNNING_EXCEPTION.create();
+
+        return pregenerator;
+    }
+}
@@ -7,95 +7,68 @@
  ******************************************************************************/
 package biomesoplenty.common.command;
 
+import biomesoplenty.common.util.biome.BiomeLocator;
 import biomesoplenty.common.util.biome.BiomeUtil;
-import biomesoplenty.common.util.block.BlockUtil;
 import com.mojang.brigadier.builder.ArgumentBuilder;
-import com.mojang.brigadier.exceptions.CommandSyntaxException;
-import net.minecraft.block.BlockState;
-import net.minecraft.block.material.Material;
 import net.minecraft.command.CommandSource;
 import net.minecraft.command.Commands;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.text.TranslationTextComponent;
-import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.chunk.IChunk;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import net.minecraft.world.server.ServerWorld;
 
 public class CommandTpBiome
 {
-    private static final ExecutorService TP_BIOME_THREAD = Executors.newFixedThreadPool(1);
-
     static ArgumentBuilder<CommandSource, ?> register()
     {
         return Commands.literal("tpbiome")
                 .then(Commands.argument("biome", BiomeArgument.createArgument())
                         .executes(ctx -> {
-                            ServerPlayerEntity player = ctx.getSource().getPlayerOrException();
-                            TP_BIOME_THREAD.execute(() -> {
-                                try
-                                {
-                                    findTeleportBiome(ctx.getSource(), player, BiomeArgument.getValue(ctx, "biome"));
-                                }
-                                catch (CommandSyntaxException e)
-                                {
-                                    e.printStackTrace();
-                                }
-                            });
+                            CommandSource source = ctx.getSource();
+                            ServerPlayerEntity player = source.getPlayerOrException();
+                            ServerWorld world = player.getLevel();
+                            Biome biome = BiomeArgument.getValue(ctx, "biome");
+                            int startX = MathHelper.floor(player.getX());
+                            int startZ = MathHelper.floor(player.getZ());
+                            BOPJobScheduler.Job job = BOPJobScheduler.submit(source, "tpbiome " + biome.getRegistryName(), (task) -> findTeleportBiome(task, source, player, world, biome, startX, startZ));
+                            source.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.jobs.started", job.getId(), job.getDescription()), false);
                             return 1;
                         }));
 
     }
 
-    private static int findTeleportBiome(CommandSource cs, ServerPlayerEntity player, Biome biome)
+    // The world is the one the player was in when the command ran, as the player may change worlds while searching
+    private static void findTeleportBiome(BOPJobScheduler.Job job, CommandSource cs, ServerPlayerEntity player, ServerWorld world, Biome biome, int startX, int startZ) throws InterruptedException
     {
-        World world = player.level;
-        BlockPos closestBiomePos = biome == null ? null : BiomeUtil.spiralOutwardsLookingForBiome(world, biome, player.getX(), player.getZ());
         String biomeName = biome != null && world.isClientSide ? biome.getName().toString() : biome.getRegistryName().toString();
+        BiomeLocator locator = new BiomeLocator(world, biome, startX, startZ, BiomeUtil.getSearchRadius(world));
+        job.onCancel(locator::cancel);
+        job.setProgress(locator::getProgress);
+        BlockPos closestBiomePos = locator.locate();
 
-        if (closestBiomePos != null)
+        // Chunks are only touched on the server thread
+        job.runOnServer(() ->
         {
-            double x = (double)closestBiomePos.getX();
-            double y = (double) BlockUtil.getTopSolidOrLiquidBlock(world, closestBiomePos.getX(), closestBiomePos.getZ()).getY();
-            double z = (double)closestBiomePos.getZ();
-
-            if (!world.getDimension().isNaturalDimension())
+            if (player.hasDisconnected() || player.getLevel() != world)
             {
-                y = (double)getTopBlockNonOverworld(world, closestBiomePos).getY();
+                cs.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.tpbiome.left", player.getName(), biomeName), true);
             }
+            else if (closestBiomePos != null)
+            {
+                BlockPos landingPos = BiomeLocator.getLandingPos(world, closestBiomePos);
+                double x = (double)landingPos.getX();
+                double y = (double)landingPos.getY();
+                double z = (double)landingPos.getZ();
 
-            player.connection.teleport(x, y, z, player.yRot, player.xRot);
-            cs.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.tpbiome.success", player.getName(), biomeName, x, y, z), true);
-        }
-        else
-        {
-            cs.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.tpbiome.error", biomeName), true);
-        }
-
-        return 1;
-    }
-
-    public static BlockPos getTopBlockNonOverworld(World world, BlockPos pos)
-    {
-        IChunk chunk = world.getChunk(pos);
-        BlockPos blockpos;
-        BlockPos blockpos1;
-        BlockPos blockpos2 = new BlockPos(pos.getX(), chunk.getHighestSectionPosition() + 16, pos.getZ());
-
-        for (blockpos = blockpos2; blockpos.getY() >= 0; blockpos = blockpos1)
-        {
-            blockpos1 = blockpos.below();
-            BlockState state = chunk.getBlockState(blockpos1);
-
-            if (!state.getMaterial().blocksMotion() && !world.isEmptyBlock(blockpos1.below()) && state.getMaterial() != Material.LEAVES)
+                player.connection.teleport(x, y, z, player.yRot, player.xRot);
+                cs.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.tpbiome.success", player.getName(), biomeName, x, y, z), true);
+            }
+            else
             {
-                return blockpos1;
+                cs.sendSuccess(new TranslationTextComponent("commands.biomesoplenty.tpbiome.error", biomeName), true);
             }
-        }
-
-        return blockpos2;
+        });
     }
 }
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.util.biome;
+
+import biomesoplenty.common.world.BiomeLocationIndex;
+import biomesoplenty.common.world.IBOPBiomeProvider;
+import biomesoplenty.core.BiomesOPlenty;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeManager;
+import net.minecraft.world.biome.provider.BiomeProvider;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.server.ServerWorld;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Finds the closest position of a biome to a point. The search area is split into square cells of quarts,
+ * which are searched ring by ring outwards from the start, each ring in parallel. Cells are read a whole
+ * region at a time from the biome provider, and BOP providers skip cells which their presence index says
+ * can't contain the biome. Only the closest match is refined to a block, using the world's biome zoom. If
+ * zooming leaves none of its blocks in the biome, the search is repeated without it.
+ *
+ * A position already known to the world's BiomeLocationIndex bounds the search, so only the cells closer
+ * to the start than it are searched. Biomes seen in searched cells are added to the index.
+ *
+ * Searches never load chunks. The landing height is chosen separately, on the server thread.
+ */
+public class BiomeLocator
+{
+    // Cells are 64x64 quarts, matching the largest nodes of BiomePresenceIndex
+    private static final int CELL_BITS = 6;
+    private static final int CELL_SIZE = 1 << CELL_BITS;
+
+    // Searches give up after this many matching quarts fail to refine
+    private static final int MAX_REFINE_ATTEMPTS = 8;
+
+    private static final ExecutorService WORKERS = createWorkers();
+
+    private final BiomeProvider provider;
+    private final BiomeManager biomeZoom;
+    @Nullable
+    private final BiomeLocationIndex index;
+    private final int seaLevel;
+    private final Biome biome;
+    private final int biomeId;
+    private final int startX;
+    private final int startZ;
+    private final int radius;
+
+    private final AtomicInteger cellsSearched = new AtomicInteger();
+    private final int cellCount;
+    private volatile boolean cancelled;
+
+    /***
+     * @param radius the furthest to search from the start, in blocks
+     */
+    public BiomeLocator(ServerWorld world, Biome biome, int startX, int startZ, int radius)
+    {
+        this.provider = world.getChunkSource().getGenerator().getBiomeSource();
+        // Zooms straight from the provider, so that refining doesn't go through chunks
+        this.biomeZoom = world.getBiomeManager().withDifferentSource(this.provider);
+        this.index = BiomeLocationIndex.getLoaded(world);
+        this.seaLevel = world.getSeaLevel();
+        this.biome = biome;
+        this.biomeId = Registry.BIOME.getId(biome);
+        this.startX = startX;
+        this.startZ = startZ;
+        this.radius = radius;
+
+        int rings = this.getRingCount();
+        this.cellCount = (rings * 2 + 1) * (rings * 2 + 1);
+    }
+
+    /***
+     * Searches for the biome, blocking until it's found, the search area is exhausted or the search is
+     * cancelled. Returns null if the biome wasn't found.
+     */
+    @Nullable
+    public BlockPos locate() throws InterruptedException
+    {
+        int quartX = this.startX >> 2;
+        int quartZ = this.startZ >> 2;
+        // Quarts in the biome with no block of it after zooming, which are skipped when searching again
+        LongSet rejected = new LongOpenHashSet();
+
+        while (!this.cancelled && rejected.size() < MAX_REFINE_ATTEMPTS)
+        {
+            Match best = this.search(quartX, quartZ, rejected);
+            if (best == null || this.cancelled) return null;
+
+            BlockPos pos = this.refine(best.x, best.z);
+
+            if (pos != null)
+            {
+                if (this.index != null) this.index.record(this.biomeId, best.x, best.z);
+                this.cellsSearched.set(this.cellCount);
+                return pos;
+            }
+
+            rejected.add(ChunkPos.asLong(best.x, best.z));
+        }
+
+        return null;
+    }
+
+    // The closest matching quart, other than those rejected
+    @Nullable
+    private Match search(int quartX, int quartZ, LongSet rejected) throws InterruptedException
+    {
+        int cellX = quartX >> CELL_BITS;
+        int cellZ = quartZ >> CELL_BITS;
+        int rings = this.getRingCount();
+        Match best = this.findKnown(quartX, quartZ, rejected);
+        this.cellsSearched.set(0);
+
+        for (int ring = 0; ring <= rings && !this.cancelled; ++ring)
+        {
+            // Every cell in this ring is at least this far from the start, so nothing closer can be found
+            long ringDistance = (long)Math.max(0, ring - 1) * CELL_SIZE;
+            if (best != null && ringDistance * ringDistance > best.distanceSq) break;
+
+            List<Future<Match>> futures = Lists.newArrayList();
+
+            for (int offsetZ = -ring; offsetZ <= ring; ++offsetZ)
+            {
+                for (int offsetX = -ring; offsetX <= ring; ++offsetX)
+                {
+                    if (Math.max(Math.abs(offsetX), Math.abs(offsetZ)) != ring) continue;
+
+                    int searchX = cellX + offsetX;
+                    int searchZ = cellZ + offsetZ;
+                    futures.add(WORKERS.submit(() -> this.searchCell(searchX, searchZ, quartX, quartZ, rejected)));
+                }
+            }
+
+            try
+            {
+                for (Future<Match> future : futures)
+                {
+                    best = Match.closest(best, future.get());
+                    this.cellsSearched.incrementAndGet();
+                }
+            }
+            catch (ExecutionException e)
+            {
+                throw new RuntimeException("Failed to search for biome " + this.biome.getRegistryName(), e.getCause());
+            }
+            finally
+            {
+                for (Future<Match> future : futures) future.cancel(true);
+            }
+        }
+
+        return best;
+    }
+
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return this.cancelled;
+    }
+
+    // Between 0 and 1. Searches usually end before every cell is searched
+    public float getProgress()
+    {
+        return Math.min(1.0F, (float)this.cellsSearched.get() / this.cellCount);
+    }
+
+    // The closest position in the index which is still in the biome. Positions which aren't are forgotten
+    @Nullable
+    private Match findKnown(int quartX, int quartZ, LongSet rejected)
+    {
+        if (this.index == null) return null;
+
+        for (BlockPos known : this.index.findNearby(this.biomeId, this.startX, this.startZ, this.radius))
+        {
+            int knownX = known.getX() >> 2;
+            int knownZ = known.getZ() >> 2;
+            if (rejected.contains(ChunkPos.asLong(knownX, knownZ))) continue;
+
+            if (this.provider.getNoiseBiome(knownX, 0, knownZ) == this.biome)
+            {
+                return Match.of(knownX, knownZ, quartX, quartZ, (long)(this.radius >> 2) * (this.radius >> 2));
+            }
+
+            this.index.forget(this.biomeId, knownX, knownZ);
+        }
+
+        return null;
+    }
+
+    private int getRingCount()
+    {
+        return ((this.radius >> 2) >> CELL_BITS) + 1;
+    }
+
+    @Nullable
+    private Match searchCell(int cellX, int cellZ, int quartX, int quartZ, LongSet rejected)
+    {
+        if (this.cancelled) return null;
+
+        int minX = cellX << CELL_BITS;
+        int minZ = cellZ << CELL_BITS;
+        long radiusSq = (long)(this.radius >> 2) * (this.radius >> 2);
+        Match best = null;
+
+        if (this.provider instanceof IBOPBiomeProvider)
+        {
+            IBOPBiomeProvider bopProvider = (IBOPBiomeProvider)this.provider;
+            long[] presence = bopProvider.getPresenceIndex().getPresence(minX, minZ, minX + CELL_SIZE - 1, minZ + CELL_SIZE - 1);
+            int word = this.biomeId >> 6;
+
+            if (word >= presence.length || (presence[word] & (1L << this.biomeId)) == 0)
+                return null;
+
+            int[] ids = bopProvider.getNoiseBiomeIds(null, minX, minZ, CELL_SIZE, CELL_SIZE);
+            if (this.index != null) this.index.recordAll(ids, minX, minZ, CELL_SIZE, CELL_SIZE);
+
+            for (int i = 0; i < CELL_SIZE * CELL_SIZE; ++i)
+            {
+                int x = minX + (i & (CELL_SIZE - 1));
+                int z = minZ + (i >> CELL_BITS);
+                if (ids[i] == this.biomeId && !rejected.contains(ChunkPos.asLong(x, z))) best = Match.closest(best, Match.of(x, z, quartX, quartZ, radiusSq));
+            }
+        }
+        else
+        {
+            for (int z = minZ; z < minZ + CELL_SIZE; ++z)
+            {
+                for (int x = minX; x < minX + CELL_SIZE; ++x)
+                {
+                    if (this.provider.getNoiseBiome(x, 0, z) == this.biome && !rejected.contains(ChunkPos.asLong(x, z))) best = Match.closest(best, Match.of(x, z, quartX, quartZ, radiusSq));
+                }
+            }
+        }
+
+        return best;
+    }
+
+    // Finds the closest block to the start around a matching quart which is actually in the biome after zooming, or null if there are none
+    @Nullable
+    private BlockPos refine(int quartX, int quartZ)
+    {
+        BlockPos closest = null;
+        long closestSq = Long.MAX_VALUE;
+
+        // Zooming may offset a quart by up to two blocks in any direction
+        for (int z = (quartZ << 2) - 2; z < (quartZ << 2) + 6; ++z)
+        {
+            for (int x = (quartX << 2) - 2; x < (quartX << 2) + 6; ++x)
+            {
+                long dx = x - this.startX;
+                long dz = z - this.startZ;
+                long distanceSq = dx * dx + dz * dz;
+
+                if (distanceSq < closestSq && this.biomeZoom.getBiome(new BlockPos(x, this.seaLevel, z)) == this.biome)
+                {
+                    closest = new BlockPos(x, 0, z);
+                    closestSq = distanceSq;
+                }
+            }
+        }
+
+        return closest;
+    }
+
+    /***
+     * Picks the height to land at in a column, loading its chunk. Must be called on the server thread.
+     */
+    public static BlockPos getLandingPos(ServerWorld world, BlockPos pos)
+    {
+        IChunk chunk = world.getChunk(pos);
+        int x = pos.getX() & 15;
+        int z = pos.getZ() & 15;
+
+        if (world.getDimension().isNaturalDimension())
+        {
+            return new BlockPos(pos.getX(), chunk.getHeight(Heightmap.Type.MOTION_BLOCKING, x, z), pos.getZ());
+        }
+
+        // Dimensions with a ceiling have it at the top of their heightmaps, so look down from there for space to stand in
+        BlockPos top = new BlockPos(pos.getX(), chunk.getHeight(Heightmap.Type.WORLD_SURFACE, x, z) + 1, pos.getZ());
+
+        for (BlockPos current = top; current.getY() > 0; current = current.below())
+        {
+            BlockPos below = current.below();
+            BlockState state = chunk.getBlockState(below);
+
+            if (!state.getMaterial().blocksMotion() && !world.isEmptyBlock(below.below()) && state.getMaterial() != Material.LEAVES)
+            {
+                return below;
+            }
+        }
+
+        return top;
+    }
+
+    private static ExecutorService createWorkers()
+    {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("BOP Biome Locator #%d").setDaemon(true)
+                        .setUncaughtExceptionHandler((thread, e) -> BiomesOPlenty.logger.error("Uncaught exception in " + thread.getName(), e)).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class Match
+    {
+        private final int x;
+        private final int z;
+        private final long distanceSq;
+
+        private Match(int x, int z, long distanceSq)
+        {
+            this.x = x;
+            this.z = z;
+            this.distanceSq = distanceSq;
+        }
+
+        @Nullable
+        private static Match of(int x, int z, int startX, int startZ, long radiusSq)
+        {
+            long dx = x - startX;
+            long dz = z - startZ;
+            long distanceSq = dx * dx + dz * dz;
+            return distanceSq <= radiusSq ? new Match(x, z, distanceSq) : null;
+        }
+
+        // Ties are broken by position, so results don't depend on the order cells finish in
+        @Nullable
+        private static Match closest(@Nullable Match a, @Nullable Match b)
+        {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.distanceSq != b.distanceSq) return a.distanceSq < b.distanceSq ? a : b;
+            if (a.z != b.z) return a.z < b.z ? a : b;
+            return a.x <= b.x ? a : b;
+        }
+    }
+}
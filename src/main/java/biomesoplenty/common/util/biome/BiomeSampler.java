@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.util.biome;
+
+import biomesoplenty.common.world.IBOPBiomeProvider;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.Biomes;
+import net.minecraft.world.biome.provider.BiomeProvider;
+import net.minecraft.world.server.ServerWorld;
+
+import javax.annotation.Nullable;
+
+/***
+ * Counts how often each biome occurs on a square grid of samples around a point, reading the noise biomes
+ * of the world's biome provider directly so no chunks are loaded. BOP providers are read a band of rows
+ * at a time when samples are close together, and always bypass the biome cache and store, so sampling
+ * leaves nothing behind.
+ *
+ * Sampling runs on the calling thread and may take a long time, so it should be run as a job.
+ */
+public class BiomeSampler
+{
+    // Bands of rows read at once, matching the tiles of BiomeTileCache
+    private static final int BAND_DEPTH = 8;
+
+    private final BiomeProvider provider;
+    private final int minX;
+    private final int minZ;
+    private final int step;
+    private final int samplesPerSide;
+
+    private volatile int rowsSampled;
+    private volatile boolean cancelled;
+
+    /***
+     * @param radius the distance from the centre to the edges of the sampled square, in blocks
+     * @param resolution the distance between samples, in blocks, rounded down to whole quarts
+     */
+    public BiomeSampler(ServerWorld world, int centerX, int centerZ, int radius, int resolution)
+    {
+        this.provider = world.getChunkSource().getGenerator().getBiomeSource();
+        this.step = Math.max(1, resolution >> 2);
+        this.samplesPerSide = (radius >> 2) / this.step * 2 + 1;
+        this.minX = (centerX >> 2) - (this.samplesPerSide / 2) * this.step;
+        this.minZ = (centerZ >> 2) - (this.samplesPerSide / 2) * this.step;
+    }
+
+    public static long getSampleCount(int radius, int resolution)
+    {
+        long samplesPerSide = (radius >> 2) / Math.max(1, resolution >> 2) * 2 + 1;
+        return samplesPerSide * samplesPerSide;
+    }
+
+    /***
+     * Samples the whole square, returning the number of samples of each biome indexed by biome id, or null if
+     * sampling was cancelled.
+     */
+    @Nullable
+    public long[] sample()
+    {
+        long[] counts = new long[getMaxId() + 1];
+
+        if (this.provider instanceof IBOPBiomeProvider)
+        {
+            if (this.step < BAND_DEPTH) this.sampleBands((IBOPBiomeProvider)this.provider, counts);
+            else this.samplePoints((IBOPBiomeProvider)this.provider, counts);
+        }
+        else
+        {
+            this.samplePoints(counts);
+        }
+
+        return this.cancelled ? null : counts;
+    }
+
+    private void sampleBands(IBOPBiomeProvider provider, long[] counts)
+    {
+        int width = (this.samplesPerSide - 1) * this.step + 1;
+        int[] ids = null;
+
+        for (int row = 0; row < this.samplesPerSide && !this.cancelled; row += BAND_DEPTH)
+        {
+            int rows = Math.min(BAND_DEPTH, this.samplesPerSide - row);
+            int z = this.minZ + row * this.step;
+            int depth = (rows - 1) * this.step + 1;
+
+            ids = provider.computeNoiseBiomeIds(ids, this.minX, z, width, depth);
+
+            for (int i = 0; i < rows; ++i)
+            {
+                for (int j = 0; j < this.samplesPerSide; ++j)
+                {
+                    count(counts, ids[i * this.step * width + j * this.step]);
+                }
+            }
+
+            this.rowsSampled = row + rows;
+        }
+    }
+
+    private void samplePoints(IBOPBiomeProvider provider, long[] counts)
+    {
+        int[] id = new int[1];
+
+        for (int row = 0; row < this.samplesPerSide && !this.cancelled; ++row)
+        {
+            int z = this.minZ + row * this.step;
+
+            for (int j = 0; j < this.samplesPerSide; ++j)
+            {
+                count(counts, provider.computeNoiseBiomeIds(id, this.minX + j * this.step, z, 1, 1)[0]);
+            }
+
+            this.rowsSampled = row + 1;
+        }
+    }
+
+    private void samplePoints(long[] counts)
+    {
+        for (int row = 0; row < this.samplesPerSide && !this.cancelled; ++row)
+        {
+            int z = this.minZ + row * this.step;
+
+            for (int j = 0; j < this.samplesPerSide; ++j)
+            {
+                count(counts, Registry.BIOME.getId(this.provider.getNoiseBiome(this.minX + j * this.step, 0, z)));
+            }
+
+            this.rowsSampled = row + 1;
+        }
+    }
+
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    // Between 0 and 1
+    public float getProgress()
+    {
+        return (float)this.rowsSampled / this.samplesPerSide;
+    }
+
+    public long getSamplesTaken()
+    {
+        return (long)this.rowsSampled * this.samplesPerSide;
+    }
+
+    // Unknown ids are counted as the default biome, as getNoiseBiome would return
+    private static void count(long[] counts, int id)
+    {
+        if (id < 0 || id >= counts.length || Registry.BIOME.byId(id) == null)
+        {
+            id = Registry.BIOME.getId(Biomes.DEFAULT);
+        }
+
+        counts[id]++;
+    }
+
+    private static int getMaxId()
+    {
+        int maxId = 0;
+
+        for (Biome biome : Registry.BIOME)
+        {
+            maxId = Math.max(maxId, Registry.BIOME.getId(biome));
+        }
+
+        return maxId;
+    }
+}
@@ -8,9 +8,12 @@
 package biomesoplenty.common.world;
 
 import biomesoplenty.api.enums.BOPClimates;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Registry;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.Biomes;
 import net.minecraft.world.biome.provider.BiomeProvider;
@@ -18,40 +21,83 @@ import net.minecraft.world.biome.provider.OverworldBiomeProvider;
 import net.minecraft.world.biome.provider.OverworldBiomeProviderSettings;
 import net.minecraft.world.gen.OverworldGenSettings;
 import net.minecraft.world.gen.feature.structure.Structure;
-import net.minecraft.world.gen.layer.Layer;
 import net.minecraft.world.gen.layer.LayerUtil;
 import net.minecraft.world.storage.WorldInfo;
 
 import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class BOPBiomeProvider extends OverworldBiomeProvider
+public class BOPBiomeProvider extends OverworldBiomeProvider implements IBOPBiomeProvider
 {
-    private final Layer noiseBiomeLayer;
+    private final NoiseBiomeSource noiseBiomes;
     protected final Set<Biome> possibleBiomes;
+    private final long[] possibleBiomeIds;
+    private final Map<Structure<?>, long[]> validStartIds = Maps.newConcurrentMap();
 
     public BOPBiomeProvider(OverworldBiomeProviderSettings settingsProvider)
+    {
+        this(settingsProvider, null);
+    }
+
+    public BOPBiomeProvider(OverworldBiomeProviderSettings settingsProvider, @Nullable BiomeRegionStore regionStore)
     {
         super(settingsProvider);
         this.possibleBiomes = Sets.newHashSet(super.possibleBiomes);
         this.possibleBiomes.addAll(BOPClimates.getOverworldBiomes());
-        this.noiseBiomeLayer = BOPLayerUtil.createGenLayers(settingsProvider.getSeed(), settingsProvider.getGeneratorType(), (BOPOverworldGenSettings)settingsProvider.getGeneratorSettings());
+        this.possibleBiomeIds = BiomePresenceIndex.toPresence(this.possibleBiomes);
+        this.noiseBiomes = new NoiseBiomeSource(() -> BOPLayerUtil.createGenLayers(settingsProvider.getSeed(), settingsProvider.getGeneratorType(), (BOPOverworldGenSettings)settingsProvider.getGeneratorSettings()), regionStore);
     }
 
     @Override
     public Biome getNoiseBiome(int x, int y, int z)
     {
-        return this.noiseBiomeLayer.get(x, z);
+        return this.noiseBiomes.getBiome(x, z);
+    }
+
+    @Override
+    public NoiseBiomeSource getNoiseBiomeSource()
+    {
+        return this.noiseBiomes;
+    }
+
+    @Override
+    @Nullable
+    public BlockPos findBiomeHorizontal(int x, int y, int z, int radius, List<Biome> biomes, Random random)
+    {
+        return this.findNoiseBiomeHorizontal(x, y, z, radius, biomes, random);
+    }
+
+    @Override
+    public Set<Biome> getBiomesWithin(int x, int y, int z, int radius)
+    {
+        return this.noiseBiomes.getBiomesWithin(x, z, radius);
     }
 
     @Override
     public boolean canGenerateStructure(Structure<?> structure)
     {
-        return this.supportedStructures.computeIfAbsent(structure, (p_226839_1_) -> this.possibleBiomes.stream().anyMatch((biome) -> biome.isValidStart(p_226839_1_)));
+        return this.supportedStructures.computeIfAbsent(structure, (p_226839_1_) -> BiomePresenceIndex.intersects(this.possibleBiomeIds, this.getValidStartIds(p_226839_1_)));
+    }
+
+    // A bitset of the ids of every biome in which the structure may start
+    public long[] getValidStartIds(Structure<?> structure)
+    {
+        return this.validStartIds.computeIfAbsent(structure, (key) ->
+        {
+            List<Biome> biomes = Lists.newArrayList();
+
+            for (Biome biome : Registry.BIOME)
+            {
+                if (biome.isValidStart(key)) biomes.add(biome);
+            }
+
+            return BiomePresenceIndex.toPresence(biomes);
+        });
     }
 
     @Override
@@ -8,14 +8,21 @@
 package biomesoplenty.common.world;
 
 import biomesoplenty.common.world.layer.*;
+import biomesoplenty.common.world.layer.traits.IBOPAreaTransformer0;
+import biomesoplenty.common.world.layer.traits.IBOPContextExtended;
+import biomesoplenty.common.world.layer.traits.LayerCacheManager;
+import biomesoplenty.common.world.layer.traits.LazyAreaBOP;
 import biomesoplenty.common.world.layer.traits.LazyAreaLayerContextBOP;
+import biomesoplenty.common.world.layer.traits.TileArea;
+import biomesoplenty.common.world.layer.traits.TileAreaGraph;
+import biomesoplenty.common.world.layer.traits.TileAreaLayerContextBOP;
+import biomesoplenty.init.ModConfig;
 import net.minecraft.util.registry.Registry;
 import net.minecraft.world.WorldType;
 import net.minecraft.world.biome.Biomes;
 import net.minecraft.world.gen.IExtendedNoiseRandom;
 import net.minecraft.world.gen.area.IArea;
 import net.minecraft.world.gen.area.IAreaFactory;
-import net.minecraft.world.gen.area.LazyArea;
 import net.minecraft.world.gen.layer.*;
 
 import java.util.function.LongFunction;
@@ -49,8 +56,7 @@ public class BOPLayerUtil
         //factory = GenLayerEdge.CoolWarm.INSTANCE.run(contextFactory.apply(2L), factory);
         //factory = GenLayerEdge.HeatIce.INSTANCE.run(contextFactory.apply(2L), factory);
         //factory = GenLayerEdge.Special.INSTANCE.run(contextFactory.apply(3L), factory);
-        factory = ZoomLayer.NORMAL.run(contextFactory.apply(2002L), factory);
-        factory = ZoomLayer.NORMAL.run(contextFactory.apply(2003L), factory);
+        factory = zoom(2002L, ZoomLayer.NORMAL, factory, 2, contextFactory);
         factory = AddIslandLayer.INSTANCE.run(contextFactory.apply(4L), factory);
         return factory;
     }
@@ -58,53 +64,70 @@ public class BOPLayerUtil
     // superimpose hot and cold regions an a land and sea layer
     public static <T extends IArea, C extends IExtendedNoiseRandom<T>> IAreaFactory<T> createClimateFactory(LongFunction<C> contextFactory, BOPOverworldGenSettings settings)
     {
-        IAreaFactory<T> temperatureFactory;
+        IBOPAreaTransformer0 temperatureLayer;
+        long temperatureSeed;
 
         switch (settings.getTempScheme())
         {
             case LATITUDE: default:
-                temperatureFactory = TemperatureLatitudeLayer.INSTANCE.run(contextFactory.apply(2L));
+                temperatureLayer = TemperatureLatitudeLayer.INSTANCE;
+                temperatureSeed = 2L;
                 break;
             case SMALL_ZONES:
-                temperatureFactory = TemperatureNoiseLayer.SMALL_ZONES.run(contextFactory.apply(3L));
+                temperatureLayer = TemperatureNoiseLayer.SMALL_ZONES;
+                temperatureSeed = 3L;
                 break;
             case MEDIUM_ZONES:
-                temperatureFactory = TemperatureNoiseLayer.MEDIUM_ZONES.run(contextFactory.apply(4L));
+                temperatureLayer = TemperatureNoiseLayer.MEDIUM_ZONES;
+                temperatureSeed = 4L;
                 break;
             case LARGE_ZONES:
-                temperatureFactory = TemperatureNoiseLayer.LARGE_ZONES.run(contextFactory.apply(5L));
+                temperatureLayer = TemperatureNoiseLayer.LARGE_ZONES;
+                temperatureSeed = 5L;
                 break;
             case RANDOM:
-                temperatureFactory = TemperatureRandomLayer.INSTANCE.run(contextFactory.apply(6L));
+                temperatureLayer = TemperatureRandomLayer.INSTANCE;
+                temperatureSeed = 6L;
                 break;
         }
 
-        IAreaFactory<T> rainfallFactory;
+        IBOPAreaTransformer0 rainfallLayer;
+        long rainfallSeed;
+
         switch(settings.getRainScheme())
         {
             case SMALL_ZONES:
-                rainfallFactory = RainfallNoiseLayer.SMALL_ZONES.run(contextFactory.apply(7L));
+                rainfallLayer = RainfallNoiseLayer.SMALL_ZONES;
+                rainfallSeed = 7L;
                 break;
             case MEDIUM_ZONES: default:
-                rainfallFactory = RainfallNoiseLayer.MEDIUM_ZONES.run(contextFactory.apply(8L));
+                rainfallLayer = RainfallNoiseLayer.MEDIUM_ZONES;
+                rainfallSeed = 8L;
                 break;
             case LARGE_ZONES:
-                rainfallFactory = RainfallNoiseLayer.LARGE_ZONES.run(contextFactory.apply(9L));
+                rainfallLayer = RainfallNoiseLayer.LARGE_ZONES;
+                rainfallSeed = 9L;
                 break;
             case RANDOM:
-                rainfallFactory = RainfallRandomLayer.INSTANCE.run(contextFactory.apply(10L));
+                rainfallLayer = RainfallRandomLayer.INSTANCE;
+                rainfallSeed = 10L;
                 break;
         }
 
-        return ClimateLayer.INSTANCE.run(contextFactory.apply(103L), temperatureFactory, rainfallFactory);
+        // Climates only depend on the seed and the layers used, so stacks for the same world share them
+        C climateContext = contextFactory.apply(103L);
+        long seed = ((IBOPContextExtended<?>)climateContext).getWorldSeed();
+        ClimateFieldCache climateCache = ClimateFieldCache.getShared(seed, temperatureLayer, temperatureSeed, rainfallLayer, rainfallSeed);
+
+        return cacheAs("climate", new ClimateFieldLayer(climateCache).run(climateContext));
     }
 
-    public static <T extends IArea, C extends IExtendedNoiseRandom<T>> IAreaFactory<T> createBiomeFactory(IAreaFactory<T> landSeaAreaFactory, IAreaFactory<T> climateAreaFactory, LongFunction<C> contextFactory)
+    public static <T extends IArea, C extends IExtendedNoiseRandom<T>> IAreaFactory<T> createBiomeFactory(IAreaFactory<T> landSeaAreaFactory, IAreaFactory<T> climateAreaFactory, BiomeEdgeRules edgeRules, LongFunction<C> contextFactory)
     {
         IAreaFactory<T> biomeFactory = BOPBiomeLayer.INSTANCE.run(contextFactory.apply(200L), landSeaAreaFactory, climateAreaFactory);
         biomeFactory = AddBambooForestLayer.INSTANCE.run(contextFactory.apply(1001L), biomeFactory);
-        biomeFactory = LayerUtil.zoom(1000L, ZoomLayer.NORMAL, biomeFactory, 2, contextFactory);
-        biomeFactory = BOPBiomeEdgeLayer.INSTANCE.run(contextFactory.apply(1000L), biomeFactory);
+        biomeFactory = zoom(1000L, ZoomLayer.NORMAL, biomeFactory, 2, contextFactory);
+        biomeFactory = cacheAs("biome_edge", new BOPBiomeEdgeLayer(edgeRules).run(contextFactory.apply(1000L), biomeFactory));
         return biomeFactory;
     }
 
@@ -114,10 +137,6 @@ public class BOPLayerUtil
         // and mushroom islands
         IAreaFactory<T> landSeaFactory = createInitialLandAndSeaFactory(contextFactory);
 
-        // Determines positions for all of the new ocean subbiomes added in 1.13
-        IAreaFactory<T> oceanBiomeFactory = OceanLayer.INSTANCE.run(contextFactory.apply(2L));
-        oceanBiomeFactory = LayerUtil.zoom(2001L, ZoomLayer.NORMAL, oceanBiomeFactory, 6, contextFactory);
-
         int biomeSize = 4;
         int riverSize = biomeSize;
         if (settings != null)
@@ -129,54 +148,140 @@ public class BOPLayerUtil
         biomeSize = LayerUtil.getModdedBiomeSize(worldType, biomeSize);
 
         // Create the climates
-        IAreaFactory<T> climateFactory = createClimateFactory(contextFactory, settings);
+        IAreaFactory<T> climateFactory = share(createClimateFactory(contextFactory, settings));
 
         // Add islands and deep oceans
         landSeaFactory = AddMushroomIslandLayer.INSTANCE.run(contextFactory.apply(5L), landSeaFactory);
         landSeaFactory = LargeIslandLayer.INSTANCE.run(contextFactory.apply(5L), landSeaFactory, climateFactory);
-        landSeaFactory = DeepOceanLayer.INSTANCE.run(contextFactory.apply(4L), landSeaFactory);
+        landSeaFactory = share(cacheAs("land_sea", DeepOceanLayer.INSTANCE.run(contextFactory.apply(4L), landSeaFactory)));
 
         // Allocate the biomes
-        IAreaFactory<T> biomesFactory = createBiomeFactory(landSeaFactory, climateFactory, contextFactory);
+        IAreaFactory<T> biomesFactory = createBiomeFactory(landSeaFactory, climateFactory, BiomeEdgeRules.fromConfig(), contextFactory);
 
         // Fork off a new branch as a seed for rivers and sub biomes
         IAreaFactory<T> riverAndSubBiomesInitFactory = StartRiverLayer.INSTANCE.run(contextFactory.apply(100L), landSeaFactory);
-        riverAndSubBiomesInitFactory = LayerUtil.zoom(1000L, ZoomLayer.NORMAL, riverAndSubBiomesInitFactory, 2, contextFactory);
-        biomesFactory = SubBiomeLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory, riverAndSubBiomesInitFactory);
+        riverAndSubBiomesInitFactory = share(cacheAs("river_init", zoom(1000L, ZoomLayer.NORMAL, riverAndSubBiomesInitFactory, 2, contextFactory)));
+        biomesFactory = cacheAs("sub_biome", SubBiomeLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory, riverAndSubBiomesInitFactory));
 
         // Develop the rivers branch
-        IAreaFactory<T> riversInitFactory = LayerUtil.zoom(1000L, ZoomLayer.NORMAL, riverAndSubBiomesInitFactory, riverSize, contextFactory);
+        IAreaFactory<T> riversInitFactory = zoom(1000L, ZoomLayer.NORMAL, riverAndSubBiomesInitFactory, riverSize, contextFactory);
         riversInitFactory = RiverLayer.INSTANCE.run(contextFactory.apply(1L), riversInitFactory);
-        riversInitFactory = SmoothLayer.INSTANCE.run(contextFactory.apply(1000L), riversInitFactory);
+        riversInitFactory = cacheAs("rivers", SmoothLayer.INSTANCE.run(contextFactory.apply(1000L), riversInitFactory));
 
         // Mix in rare biomes into biomes branch
         biomesFactory = RareBiomeLayer.INSTANCE.run(contextFactory.apply(1001L), biomesFactory);
 
         // Zoom more based on the biome size
-        for (int i = 0; i < biomeSize; ++i)
+        for (int i = 0; i < Math.min(biomeSize, 2); ++i)
         {
             biomesFactory = ZoomLayer.NORMAL.run(contextFactory.apply((long)(1000 + i)), biomesFactory);
             if (i == 0) biomesFactory = AddIslandLayer.INSTANCE.run(contextFactory.apply(3L), biomesFactory);
-            if (i == 1 || biomeSize == 1) biomesFactory = BOPShoreLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory);
+            if (i == 1 || biomeSize == 1) biomesFactory = cacheAs("shore", BOPShoreLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory));
         }
 
+        // Nothing else happens between the remaining zooms
+        biomesFactory = zoom(1002L, ZoomLayer.NORMAL, biomesFactory, biomeSize - 2, contextFactory);
+
         biomesFactory = SmoothLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory);
 
         // Mix rivers into the biomes branch
-        biomesFactory = BOPRiverMixLayer.INSTANCE.run(contextFactory.apply(100L), biomesFactory, riversInitFactory);
+        biomesFactory = cacheAs("river_mix", BOPRiverMixLayer.INSTANCE.run(contextFactory.apply(100L), biomesFactory, riversInitFactory));
 
-        climateFactory = LayerUtil.zoom(2001L, ZoomLayer.NORMAL, climateFactory, 6, contextFactory);
-        biomesFactory = BOPMixOceansLayer.INSTANCE.run(contextFactory.apply(100L), biomesFactory, oceanBiomeFactory, climateFactory);
+        climateFactory = zoom(2001L, ZoomLayer.NORMAL, climateFactory, 6, contextFactory);
+        // Ocean temperatures come from the climates
+        biomesFactory = cacheAs("mix_oceans", BOPMixOceansLayer.INSTANCE.run(contextFactory.apply(100L), biomesFactory, climateFactory));
         return biomesFactory;
     }
 
-    public static Layer createGenLayers(long seed, WorldType worldType, BOPOverworldGenSettings settings)
+    public static LayerBOP createGenLayers(long seed, WorldType worldType, BOPOverworldGenSettings settings)
     {
-        IAreaFactory<LazyArea> factory = createAreaFactories(worldType, settings, (seedModifier) ->
+        return createGenLayers(seed, worldType, settings, ModConfig.GenerationConfig.layerEngine.get());
+    }
+
+    public static LayerBOP createGenLayers(long seed, WorldType worldType, BOPOverworldGenSettings settings, LayerBOP.Engine engine)
+    {
+        BiomeTraits biomeTraits = new BiomeTraits();
+
+        if (engine == LayerBOP.Engine.TILED)
+        {
+            TileAreaGraph graph = new TileAreaGraph();
+            IAreaFactory<TileArea> factory = createAreaFactories(worldType, settings, (seedModifier) ->
+            {
+                return new TileAreaLayerContextBOP(graph, biomeTraits, seed, seedModifier);
+            });
+            return new LayerBOP(factory, graph);
+        }
+
+        LayerCacheManager cacheManager = LayerCacheManager.fromConfig();
+        IAreaFactory<LazyAreaBOP> factory = createAreaFactories(worldType, settings, (seedModifier) ->
         {
-            return new LazyAreaLayerContextBOP(1, seed, seedModifier);
+            return new LazyAreaLayerContextBOP(cacheManager, biomeTraits, seed, seedModifier);
         });
-        return new Layer(factory);
+        return new LayerBOP(factory, cacheManager);
+    }
+
+    /***
+     * Equivalent to LayerUtil.zoom. With the tiled engine the levels are fused into a single layer, which
+     * fills each region in one pass without buffering every level in the graph.
+     */
+    public static <T extends IArea, C extends IExtendedNoiseRandom<T>> IAreaFactory<T> zoom(long seed, ZoomLayer layer, IAreaFactory<T> factory, int count, LongFunction<C> contextFactory)
+    {
+        if (count <= 0) return factory;
+
+        C first = contextFactory.apply(seed);
+
+        if (count > 1 && first instanceof TileAreaLayerContextBOP)
+        {
+            IExtendedNoiseRandom<?>[] contexts = new IExtendedNoiseRandom<?>[count];
+            contexts[0] = first;
+
+            for (int i = 1; i < count; ++i)
+            {
+                contexts[i] = contextFactory.apply(seed + (long)i);
+            }
+
+            return new FusedZoomLayer(layer, contexts).run(first, factory);
+        }
+
+        IAreaFactory<T> result = layer.run(first, factory);
+
+        for (int i = 1; i < count; ++i)
+        {
+            result = layer.run(contextFactory.apply(seed + (long)i), result);
+        }
+
+        return result;
+    }
+
+    // Makes every consumer of a factory read from the same area, so a branch with several consumers is only evaluated once per stack
+    public static <T extends IArea> IAreaFactory<T> share(IAreaFactory<T> factory)
+    {
+        return new IAreaFactory<T>()
+        {
+            private T area;
+
+            @Override
+            public T make()
+            {
+                if (this.area == null)
+                {
+                    this.area = factory.make();
+                }
+
+                return this.area;
+            }
+        };
+    }
+
+    // Names the area produced by a factory so that its cache size may be configured individually
+    public static <T extends IArea> IAreaFactory<T> cacheAs(String name, IAreaFactory<T> factory)
+    {
+        return () ->
+        {
+            T area = factory.make();
+            if (area instanceof LazyAreaBOP) ((LazyAreaBOP)area).setName(name);
+            return area;
+        };
     }
 
     public static boolean isOcean(int biomeIn)
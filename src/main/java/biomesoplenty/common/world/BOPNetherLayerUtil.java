@@ -7,16 +7,23 @@
  ******************************************************************************/
 package biomesoplenty.common.world;
 
+import biomesoplenty.common.world.layer.BiomeTraits;
 import biomesoplenty.common.world.layer.LandLayer;
 import biomesoplenty.common.world.layer.NetherBiomeLayer;
 import biomesoplenty.common.world.layer.BOPShoreLayer;
+import biomesoplenty.common.world.layer.LayerBOP;
+import biomesoplenty.common.world.layer.traits.LayerCacheManager;
+import biomesoplenty.common.world.layer.traits.LazyAreaBOP;
 import biomesoplenty.common.world.layer.traits.LazyAreaLayerContextBOP;
+import biomesoplenty.common.world.layer.traits.TileArea;
+import biomesoplenty.common.world.layer.traits.TileAreaGraph;
+import biomesoplenty.common.world.layer.traits.TileAreaLayerContextBOP;
+import biomesoplenty.init.ModConfig;
 import net.minecraft.world.WorldType;
 import net.minecraft.world.gen.IExtendedNoiseRandom;
 import net.minecraft.world.gen.OverworldGenSettings;
 import net.minecraft.world.gen.area.IArea;
 import net.minecraft.world.gen.area.IAreaFactory;
-import net.minecraft.world.gen.area.LazyArea;
 import net.minecraft.world.gen.layer.*;
 
 import java.util.function.LongFunction;
@@ -27,7 +34,7 @@ public class BOPNetherLayerUtil
     {
         IAreaFactory<T> biomeFactory = NetherBiomeLayer.INSTANCE.run(contextFactory.apply(200L));
         // magnify the biome layer
-        biomeFactory = LayerUtil.zoom(1000L, ZoomLayer.NORMAL, biomeFactory, 2, contextFactory);
+        biomeFactory = BOPLayerUtil.zoom(1000L, ZoomLayer.NORMAL, biomeFactory, 2, contextFactory);
         return biomeFactory;
     }
 
@@ -42,24 +49,39 @@ public class BOPNetherLayerUtil
         IAreaFactory<T> biomesFactory = createBiomeFactory(landFactory, contextFactory);
 
         // Zoom more based on the biome size
-        for (int i = 0; i < biomeSize; ++i)
+        for (int i = 0; i < Math.min(biomeSize, 2); ++i)
         {
             biomesFactory = ZoomLayer.NORMAL.run(contextFactory.apply((long)(1000 + i)), biomesFactory);
             if (i == 0) biomesFactory = AddIslandLayer.INSTANCE.run(contextFactory.apply(3L), biomesFactory);
-            if (i == 1 || biomeSize == 1) biomesFactory = BOPShoreLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory);
+            if (i == 1 || biomeSize == 1) biomesFactory = BOPLayerUtil.cacheAs("shore", BOPShoreLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory));
         }
 
+        biomesFactory = BOPLayerUtil.zoom(1002L, ZoomLayer.NORMAL, biomesFactory, biomeSize - 2, contextFactory);
+
         biomesFactory = SmoothLayer.INSTANCE.run(contextFactory.apply(1000L), biomesFactory);
         return biomesFactory;
     }
 
-    public static Layer createGenLayers(long seed, WorldType worldType, OverworldGenSettings settings)
+    public static LayerBOP createGenLayers(long seed, WorldType worldType, OverworldGenSettings settings)
     {
-        IAreaFactory<LazyArea> factory = createAreaFactories(worldType, settings, (seedModifier) ->
+        BiomeTraits biomeTraits = new BiomeTraits();
+
+        if (ModConfig.GenerationConfig.layerEngine.get() == LayerBOP.Engine.TILED)
+        {
+            TileAreaGraph graph = new TileAreaGraph();
+            IAreaFactory<TileArea> factory = createAreaFactories(worldType, settings, (seedModifier) ->
+            {
+                return new TileAreaLayerContextBOP(graph, biomeTraits, seed, seedModifier);
+            });
+            return new LayerBOP(factory, graph);
+        }
+
+        LayerCacheManager cacheManager = LayerCacheManager.fromConfig();
+        IAreaFactory<LazyAreaBOP> factory = createAreaFactories(worldType, settings, (seedModifier) ->
         {
-            return new LazyAreaLayerContextBOP(1, seed, seedModifier);
+            return new LazyAreaLayerContextBOP(cacheManager, biomeTraits, seed, seedModifier);
         });
 
-        return new Layer(factory);
+        return new LayerBOP(factory, cacheManager);
     }
 }
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import biomesoplenty.core.BiomesOPlenty;
+import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeContainer;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Remembers where biomes have been seen in a world, so searches can start from a known occurrence. At most
+ * one position is kept per biome in each region of 128x128 quarts, and positions are stored at quart
+ * resolution. Entries come from chunks as their biomes are generated and from the cells read by searches.
+ *
+ * Entries are stored by biome name, so they survive changes to biome ids.
+ */
+@Mod.EventBusSubscriber
+public class BiomeLocationIndex extends WorldSavedData
+{
+    private static final String NAME = "biomesoplenty_biome_locations";
+    // Regions are 128x128 quarts, or 512x512 blocks
+    private static final int REGION_BITS = 7;
+    // Bounds the size of the saved data for very common biomes
+    private static final int MAX_REGIONS_PER_BIOME = 4096;
+
+    // Indexes of the loaded worlds, kept here so generation threads never touch the saved data manager
+    private static final Map<IWorld, BiomeLocationIndex> LOADED = new ConcurrentHashMap<>();
+
+    // Biome id to region to quart position, both packed as in ChunkPos. Guarded by this
+    private final Int2ObjectMap<Long2LongMap> locations = new Int2ObjectOpenHashMap<>();
+
+    public BiomeLocationIndex()
+    {
+        super(NAME);
+    }
+
+    @Nullable
+    public static BiomeLocationIndex getLoaded(IWorld world)
+    {
+        return LOADED.get(world);
+    }
+
+    @SubscribeEvent
+    public static void onWorldLoad(WorldEvent.Load event)
+    {
+        if (event.getWorld() instanceof ServerWorld)
+        {
+            ServerWorld world = (ServerWorld)event.getWorld();
+            LOADED.put(world, world.getDataStorage().computeIfAbsent(BiomeLocationIndex::new, NAME));
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event)
+    {
+        LOADED.remove(event.getWorld());
+    }
+
+    /***
+     * Records the biomes of a newly generated chunk, if the world has a loaded index.
+     */
+    public static void recordChunk(IWorld world, ChunkPos pos, BiomeContainer biomes)
+    {
+        BiomeLocationIndex index = getLoaded(world);
+        if (index == null) return;
+
+        int minX = pos.getMinBlockX() >> 2;
+        int minZ = pos.getMinBlockZ() >> 2;
+        int[] ids = new int[16];
+
+        for (int i = 0; i < 16; ++i)
+        {
+            ids[i] = Registry.BIOME.getId(biomes.getNoiseBiome(minX + (i & 3), 0, minZ + (i >> 2)));
+        }
+
+        index.recordAll(ids, minX, minZ, 4, 4);
+    }
+
+    /***
+     * Records that a biome occurs at the given quart, unless its region already has a position for it.
+     */
+    public void record(int biomeId, int quartX, int quartZ)
+    {
+        long region = ChunkPos.asLong(quartX >> REGION_BITS, quartZ >> REGION_BITS);
+
+        synchronized (this)
+        {
+            Long2LongMap regions = this.locations.get(biomeId);
+
+            if (regions == null)
+            {
+                regions = new Long2LongOpenHashMap();
+                this.locations.put(biomeId, regions);
+            }
+            else if (regions.containsKey(region) || regions.size() >= MAX_REGIONS_PER_BIOME)
+            {
+                return;
+            }
+
+            regions.put(region, ChunkPos.asLong(quartX, quartZ));
+            this.setDirty();
+        }
+    }
+
+    /***
+     * Records every biome in a width by depth region of quart ids starting at x, z, in row-major order.
+     */
+    public void recordAll(int[] ids, int x, int z, int width, int depth)
+    {
+        long[] seen = new long[4];
+
+        for (int i = 0; i < width * depth; ++i)
+        {
+            int id = ids[i];
+            if (id < 0) continue;
+
+            int word = id >> 6;
+            if (word >= seen.length) seen = Arrays.copyOf(seen, word + 1);
+            if ((seen[word] & (1L << id)) != 0) continue;
+
+            // Only the first occurrence of each biome is offered
+            seen[word] |= 1L << id;
+            this.record(id, x + i % width, z + i / width);
+        }
+    }
+
+    /***
+     * Removes a quart which turned out not to be in the biome, so that its region may record another.
+     */
+    public void forget(int biomeId, int quartX, int quartZ)
+    {
+        long region = ChunkPos.asLong(quartX >> REGION_BITS, quartZ >> REGION_BITS);
+
+        synchronized (this)
+        {
+            Long2LongMap regions = this.locations.get(biomeId);
+
+            if (regions != null && regions.containsKey(region) && regions.get(region) == ChunkPos.asLong(quartX, quartZ))
+            {
+                regions.remove(region);
+                this.setDirty();
+            }
+        }
+    }
+
+    /***
+     * Returns the known quarts of a biome within radius blocks of the given block position, closest first.
+     * Quarts are returned as the block at their corner. Callers should check them and forget any which fail.
+     */
+    public List<BlockPos> findNearby(int biomeId, int x, int z, int radius)
+    {
+        List<BlockPos> nearby = Lists.newArrayList();
+        long radiusSq = (long)radius * radius;
+
+        synchronized (this)
+        {
+            Long2LongMap regions = this.locations.get(biomeId);
+            if (regions == null) return nearby;
+
+            for (long packed : regions.values())
+            {
+                BlockPos pos = new BlockPos(ChunkPos.getX(packed) << 2, 0, ChunkPos.getZ(packed) << 2);
+                if (distanceSq(pos, x, z) <= radiusSq) nearby.add(pos);
+            }
+        }
+
+        nearby.sort(Comparator.comparingLong((BlockPos pos) -> distanceSq(pos, x, z)).thenComparingInt(BlockPos::getZ).thenComparingInt(BlockPos::getX));
+        return nearby;
+    }
+
+    private static long distanceSq(BlockPos pos, int x, int z)
+    {
+        long dx = pos.getX() - x;
+        long dz = pos.getZ() - z;
+        return dx * dx + dz * dz;
+    }
+
+    @Override
+    public void load(CompoundNBT nbt)
+    {
+        synchronized (this)
+        {
+            this.locations.clear();
+
+            for (String key : nbt.getAllKeys())
+            {
+                Optional<Biome> biome = Optional.ofNullable(ResourceLocation.tryParse(key)).flatMap(Registry.BIOME::getOptional);
+
+                if (!biome.isPresent())
+                {
+                    BiomesOPlenty.logger.debug("Dropping known locations of missing biome " + key);
+                    continue;
+                }
+
+                Long2LongMap regions = new Long2LongOpenHashMap();
+
+                for (long packed : nbt.getLongArray(key))
+                {
+                    regions.put(ChunkPos.asLong(ChunkPos.getX(packed) >> REGION_BITS, ChunkPos.getZ(packed) >> REGION_BITS), packed);
+                }
+
+                this.locations.put(Registry.BIOME.getId(biome.get()), regions);
+            }
+        }
+    }
+
+    @Override
+    public CompoundNBT save(CompoundNBT nbt)
+    {
+        synchronized (this)
+        {
+            for (Int2ObjectMap.Entry<Long2LongMap> entry : this.locations.int2ObjectEntrySet())
+            {
+                Biome biome = Registry.BIOME.byId(entry.getIntKey());
+                if (biome == null) continue;
+
+                nbt.putLongArray(Registry.BIOME.getKey(biome).toString(), entry.getValue().values().toLongArray());
+            }
+        }
+
+        return nbt;
+    }
+}
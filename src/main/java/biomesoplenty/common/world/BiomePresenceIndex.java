@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import biomesoplenty.common.world.layer.LayerBOP;
+import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * Records which biomes occur in each tile of quarts, as bitsets of biome ids, along with coarser levels
+ * each covering 2x2 nodes of the level below. Asking which biomes occur in a box ORs together the largest
+ * nodes which fit inside it, and only reads individual ids around its edges.
+ *
+ * Tiles line up with those of BiomeTileCache. Nodes are built when first needed, never modified once
+ * published, and kept in a bounded direct mapped table.
+ */
+public class BiomePresenceIndex
+{
+    private static final int TILE_BITS = BiomeTileCache.TILE_BITS;
+    private static final int TILE_SIZE = BiomeTileCache.TILE_SIZE;
+    // The largest nodes cover 8x8 tiles
+    private static final int MAX_LEVEL = 3;
+    // Must be a power of two
+    private static final int SLOT_COUNT = 4096;
+
+    private final BiomeTileCache.RegionFunction biomeIds;
+    private final int words;
+    private final AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(SLOT_COUNT);
+
+    /***
+     * @param biomeIds supplies the final biome ids of a region, normally getNoiseBiomeIds of a provider
+     */
+    public BiomePresenceIndex(BiomeTileCache.RegionFunction biomeIds)
+    {
+        this.biomeIds = biomeIds;
+        this.words = getWords();
+    }
+
+    /***
+     * Returns the biomes found between the given quart positions, inclusive.
+     */
+    public Set<Biome> getBiomes(int minX, int minZ, int maxX, int maxZ)
+    {
+        return toBiomes(this.getPresence(minX, minZ, maxX, maxZ));
+    }
+
+    /***
+     * Returns a bitset of the biome ids found between the given quart positions, inclusive.
+     */
+    public long[] getPresence(int minX, int minZ, int maxX, int maxZ)
+    {
+        long[] presence = new long[this.words];
+
+        // The tiles lying entirely within the box
+        int tileMinX = (minX + TILE_SIZE - 1) >> TILE_BITS;
+        int tileMinZ = (minZ + TILE_SIZE - 1) >> TILE_BITS;
+        int tileMaxX = ((maxX + 1) >> TILE_BITS) - 1;
+        int tileMaxZ = ((maxZ + 1) >> TILE_BITS) - 1;
+
+        if (tileMinX > tileMaxX || tileMinZ > tileMaxZ)
+        {
+            this.scan(presence, minX, minZ, maxX, maxZ);
+            return presence;
+        }
+
+        for (int nodeZ = tileMinZ >> MAX_LEVEL; nodeZ <= tileMaxZ >> MAX_LEVEL; ++nodeZ)
+        {
+            for (int nodeX = tileMinX >> MAX_LEVEL; nodeX <= tileMaxX >> MAX_LEVEL; ++nodeX)
+            {
+                this.collect(presence, MAX_LEVEL, nodeX, nodeZ, tileMinX, tileMinZ, tileMaxX, tileMaxZ);
+            }
+        }
+
+        // The edges of the box which only partly cover tiles
+        int innerMinX = tileMinX << TILE_BITS;
+        int innerMinZ = tileMinZ << TILE_BITS;
+        int innerMaxX = ((tileMaxX + 1) << TILE_BITS) - 1;
+        int innerMaxZ = ((tileMaxZ + 1) << TILE_BITS) - 1;
+        this.scan(presence, minX, minZ, maxX, innerMinZ - 1);
+        this.scan(presence, minX, innerMaxZ + 1, maxX, maxZ);
+        this.scan(presence, minX, innerMinZ, innerMinX - 1, innerMaxZ);
+        this.scan(presence, innerMaxX + 1, innerMinZ, maxX, innerMaxZ);
+        return presence;
+    }
+
+    // ORs in the parts of a node which lie within the given range of tiles
+    private void collect(long[] presence, int level, int nodeX, int nodeZ, int tileMinX, int tileMinZ, int tileMaxX, int tileMaxZ)
+    {
+        int minX = nodeX << level;
+        int minZ = nodeZ << level;
+        int maxX = ((nodeX + 1) << level) - 1;
+        int maxZ = ((nodeZ + 1) << level) - 1;
+
+        if (maxX < tileMinX || maxZ < tileMinZ || minX > tileMaxX || minZ > tileMaxZ)
+            return;
+
+        if (minX >= tileMinX && minZ >= tileMinZ && maxX <= tileMaxX && maxZ <= tileMaxZ)
+        {
+            or(presence, this.getNode(level, nodeX, nodeZ).presence);
+            return;
+        }
+
+        for (int child = 0; child < 4; ++child)
+        {
+            this.collect(presence, level - 1, (nodeX << 1) + (child & 1), (nodeZ << 1) + (child >> 1), tileMinX, tileMinZ, tileMaxX, tileMaxZ);
+        }
+    }
+
+    private void scan(long[] presence, int minX, int minZ, int maxX, int maxZ)
+    {
+        if (minX > maxX || minZ > maxZ)
+            return;
+
+        int width = maxX - minX + 1;
+        int depth = maxZ - minZ + 1;
+        int[] ids = this.biomeIds.apply(new int[width * depth], minX, minZ, width, depth);
+
+        for (int i = 0; i < width * depth; ++i)
+        {
+            set(presence, ids[i]);
+        }
+    }
+
+    private Node getNode(int level, int nodeX, int nodeZ)
+    {
+        int slot = (int)HashCommon.mix(((long)nodeX << 32 ^ (nodeZ & 0xFFFFFFFFL)) * 31 + level) & (SLOT_COUNT - 1);
+        Node node = this.nodes.get(slot);
+
+        if (node != null && node.level == level && node.x == nodeX && node.z == nodeZ)
+            return node;
+
+        // Built without locking, two threads building the same node get the same result anyway
+        long[] presence = new long[this.words];
+
+        if (level == 0)
+        {
+            this.scan(presence, nodeX << TILE_BITS, nodeZ << TILE_BITS, ((nodeX + 1) << TILE_BITS) - 1, ((nodeZ + 1) << TILE_BITS) - 1);
+        }
+        else
+        {
+            for (int child = 0; child < 4; ++child)
+            {
+                or(presence, this.getNode(level - 1, (nodeX << 1) + (child & 1), (nodeZ << 1) + (child >> 1)).presence);
+            }
+        }
+
+        node = new Node(level, nodeX, nodeZ, presence);
+        this.nodes.set(slot, node);
+        return node;
+    }
+
+    /***
+     * Returns a bitset of the ids of the given biomes.
+     */
+    public static long[] toPresence(Collection<Biome> biomes)
+    {
+        long[] presence = new long[getWords()];
+
+        for (Biome biome : biomes)
+        {
+            set(presence, Registry.BIOME.getId(biome));
+        }
+
+        return presence;
+    }
+
+    public static Set<Biome> toBiomes(long[] presence)
+    {
+        Set<Biome> biomes = Sets.newHashSet();
+
+        for (int word = 0; word < presence.length; ++word)
+        {
+            long bits = presence[word];
+
+            while (bits != 0)
+            {
+                biomes.add(LayerBOP.getBiome((word << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+
+        return biomes;
+    }
+
+    public static boolean intersects(long[] a, long[] b)
+    {
+        for (int i = 0; i < Math.min(a.length, b.length); ++i)
+        {
+            if ((a[i] & b[i]) != 0) return true;
+        }
+
+        return false;
+    }
+
+    private static int getWords()
+    {
+        int maxId = 0;
+
+        for (Biome biome : Registry.BIOME)
+        {
+            maxId = Math.max(maxId, Registry.BIOME.getId(biome));
+        }
+
+        return (maxId >> 6) + 1;
+    }
+
+    // Unknown ids are looked up as the default biome, as getNoiseBiome would
+    private static void set(long[] presence, int id)
+    {
+        if (id < 0 || (id >> 6) >= presence.length || Registry.BIOME.byId(id) == null)
+        {
+            id = Registry.BIOME.getId(LayerBOP.getBiome(id));
+        }
+
+        presence[id >> 6] |= 1L << id;
+    }
+
+    private static void or(long[] presence, long[] other)
+    {
+        for (int i = 0; i < presence.length; ++i)
+        {
+            presence[i] |= other[i];
+        }
+    }
+
+    private static class Node
+    {
+        private final int level;
+        private final int x;
+        private final int z;
+        private final long[] presence;
+
+        private Node(int level, int x, int z, long[] presence)
+        {
+            this.level = level;
+            this.x = x;
+            this.z = z;
+            this.presence = presence;
+        }
+    }
+}
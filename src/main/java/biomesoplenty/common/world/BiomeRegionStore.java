@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import biomesoplenty.common.biome.BiomeRegistry;
+import biomesoplenty.core.BiomesOPlenty;
+import biomesoplenty.init.ModConfig;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.provider.BiomeProvider;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/***
+ * Finished biome ids saved in the world folder, so they survive restarts. Ids are kept in memory mapped
+ * region files of 32x32 tiles, each tile being the 8x8 quarts used by BiomeTileCache.
+ *
+ * Every file is stamped with a key derived from the seed, the generation settings, biomes.json and the
+ * biome registry. Files with a different key are discarded, as they may no longer match what the layers
+ * would generate.
+ *
+ * Only tiles of generated chunks are written, and files are only created for them. A bounded number of
+ * regions are kept open, the least recently used being flushed once the limit is reached.
+ */
+@Mod.EventBusSubscriber
+public class BiomeRegionStore
+{
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x424F5042; // BOPB
+    private static final String KEY_FILE_NAME = "store.key";
+
+    private static final int REGION_BITS = 5;
+    private static final int REGION_SIZE = 1 << REGION_BITS;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+    private static final int TILES_PER_REGION = REGION_SIZE * REGION_SIZE;
+    private static final int TILE_AREA = BiomeTileCache.TILE_SIZE * BiomeTileCache.TILE_SIZE;
+
+    // Magic, version, key and padding, then a bit per tile marking it as present, then two bytes per id
+    private static final int HEADER_SIZE = 32;
+    private static final int PRESENCE_OFFSET = HEADER_SIZE;
+    private static final int PRESENCE_WORDS = TILES_PER_REGION / 32;
+    private static final int DATA_OFFSET = PRESENCE_OFFSET + PRESENCE_WORDS * 4;
+    private static final int FILE_SIZE = DATA_OFFSET + TILES_PER_REGION * TILE_AREA * 2;
+
+    // Roughly 8MB of mappings
+    private static final int MAX_OPEN_REGIONS = 64;
+
+    private final File directory;
+    private final long key;
+    private final Map<Long, Region> regions = new LinkedHashMap<Long, Region>(16, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Region> eldest)
+        {
+            if (this.size() <= MAX_OPEN_REGIONS) return false;
+
+            // Anyone still holding the region can keep using it, the mapping is only released once it is unreachable
+            eldest.getValue().buffer.force();
+            return true;
+        }
+    };
+    private volatile boolean failed;
+    private volatile boolean closed;
+
+    public BiomeRegionStore(File directory, long key)
+    {
+        this.directory = directory;
+        this.key = key;
+        this.validate();
+    }
+
+    /***
+     * Returns null if the store is disabled in the config.
+     */
+    @Nullable
+    public static BiomeRegionStore fromConfig(File dimensionDirectory, long seed, @Nullable BOPOverworldGenSettings settings)
+    {
+        if (!ModConfig.GenerationConfig.persistentBiomeCache.get())
+            return null;
+
+        return new BiomeRegionStore(new File(dimensionDirectory, "biomesoplenty/biomes"), computeKey(seed, settings));
+    }
+
+    /***
+     * Hashes everything which decides the biome ids generated for a seed.
+     */
+    public static long computeKey(long seed, @Nullable BOPOverworldGenSettings settings)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(FORMAT_VERSION).putLong(seed);
+            digest.update(header.array());
+
+            if (settings != null)
+            {
+                String values = settings.getBiomeSize() + ";" + settings.getRiverSize() + ";" + settings.getTempScheme() + ";" + settings.getRainScheme();
+                digest.update(values.getBytes(StandardCharsets.UTF_8));
+            }
+
+            for (String rule : ModConfig.GenerationConfig.extraEdgeRules.get())
+            {
+                digest.update(rule.getBytes(StandardCharsets.UTF_8));
+            }
+
+            File biomeConfig = BiomeRegistry.getConfigFile();
+
+            if (biomeConfig.isFile())
+            {
+                digest.update(Files.readAllBytes(biomeConfig.toPath()));
+            }
+
+            // Ids are stored raw, so they're only valid for the same registry
+            for (Biome biome : Registry.BIOME)
+            {
+                digest.update((Registry.BIOME.getId(biome) + "=" + Registry.BIOME.getKey(biome) + ";").getBytes(StandardCharsets.UTF_8));
+            }
+
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        }
+        catch (NoSuchAlgorithmException | IOException e)
+        {
+            throw new RuntimeException("Failed to compute biome store key", e);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event)
+    {
+        if (!(event.getWorld() instanceof ServerWorld))
+            return;
+
+        BiomeProvider provider = ((ServerWorld)event.getWorld()).getChunkSource().getGenerator().getBiomeSource();
+
+        if (provider instanceof IBOPBiomeProvider)
+        {
+            BiomeRegionStore store = ((IBOPBiomeProvider)provider).getRegionStore();
+            if (store != null) store.close();
+        }
+    }
+
+    /***
+     * Copies a tile's ids into out and returns true if the tile has been stored.
+     */
+    public boolean read(int tileX, int tileZ, int[] out)
+    {
+        Region region = this.getRegion(tileX >> REGION_BITS, tileZ >> REGION_BITS, false);
+        if (region == null) return false;
+
+        int tile = (tileX & REGION_MASK) + ((tileZ & REGION_MASK) << REGION_BITS);
+        if (!region.isPresent(tile)) return false;
+
+        int offset = DATA_OFFSET + tile * TILE_AREA * 2;
+
+        for (int i = 0; i < TILE_AREA; ++i)
+        {
+            out[i] = region.buffer.getShort(offset + i * 2);
+        }
+
+        return true;
+    }
+
+    public boolean contains(int tileX, int tileZ)
+    {
+        Region region = this.getRegion(tileX >> REGION_BITS, tileZ >> REGION_BITS, false);
+        return region != null && region.isPresent((tileX & REGION_MASK) + ((tileZ & REGION_MASK) << REGION_BITS));
+    }
+
+    public void write(int tileX, int tileZ, int[] ids)
+    {
+        Region region = this.getRegion(tileX >> REGION_BITS, tileZ >> REGION_BITS, true);
+        if (region == null) return;
+
+        int tile = (tileX & REGION_MASK) + ((tileZ & REGION_MASK) << REGION_BITS);
+        if (region.isPresent(tile)) return;
+
+        int offset = DATA_OFFSET + tile * TILE_AREA * 2;
+
+        for (int i = 0; i < TILE_AREA; ++i)
+        {
+            region.buffer.putShort(offset + i * 2, (short)ids[i]);
+        }
+
+        // Only marked as present once the ids are in place
+        region.setPresent(tile);
+    }
+
+    /***
+     * Flushes and releases every open region. Nothing is read or written afterwards.
+     */
+    public void close()
+    {
+        synchronized (this.regions)
+        {
+            this.closed = true;
+
+            for (Region region : this.regions.values())
+            {
+                region.buffer.force();
+            }
+
+            this.regions.clear();
+        }
+    }
+
+    // Regions which haven't been written yet are only created if create is true
+    @Nullable
+    private Region getRegion(int regionX, int regionZ, boolean create)
+    {
+        if (this.failed || this.closed) return null;
+
+        long regionKey = ChunkPos.asLong(regionX, regionZ);
+
+        synchronized (this.regions)
+        {
+            if (this.closed) return null;
+
+            Region region = this.regions.get(regionKey);
+            if (region != null) return region;
+
+            File file = new File(this.directory, "r." + regionX + "." + regionZ + ".bin");
+            if (!create && !file.isFile()) return null;
+
+            try
+            {
+                region = new Region(file, this.key);
+                this.regions.put(regionKey, region);
+                return region;
+            }
+            catch (IOException e)
+            {
+                BiomesOPlenty.logger.warn("Failed to open biome region " + regionX + ", " + regionZ + " in " + this.directory + ", the persistent biome cache will be disabled", e);
+                this.failed = true;
+                return null;
+            }
+        }
+    }
+
+    // Removes every region if they were written with a different key
+    private void validate()
+    {
+        try
+        {
+            Files.createDirectories(this.directory.toPath());
+            File keyFile = new File(this.directory, KEY_FILE_NAME);
+            String expected = Long.toHexString(this.key);
+
+            if (keyFile.isFile() && expected.equals(new String(Files.readAllBytes(keyFile.toPath()), StandardCharsets.UTF_8).trim()))
+                return;
+
+            File[] files = this.directory.listFiles((dir, name) -> name.endsWith(".bin"));
+
+            if (files != null && files.length > 0)
+            {
+                BiomesOPlenty.logger.info("Generation settings have changed, discarding " + files.length + " stored biome regions in " + this.directory);
+
+                for (File file : files)
+                {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+
+            Files.write(keyFile.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            BiomesOPlenty.logger.warn("Failed to prepare " + this.directory + ", the persistent biome cache will be disabled", e);
+            this.failed = true;
+        }
+    }
+
+    private static class Region
+    {
+        private final MappedByteBuffer buffer;
+        // Mirrors the presence bits in the file, so readers never see a tile before its ids
+        private final AtomicIntegerArray presence = new AtomicIntegerArray(PRESENCE_WORDS);
+
+        private Region(File file, long key) throws IOException
+        {
+            boolean existed = file.isFile() && file.length() == FILE_SIZE;
+
+            // The mapping remains valid once the channel is closed
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel())
+            {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            }
+
+            if (existed && this.buffer.getInt(0) == MAGIC && this.buffer.getInt(4) == FORMAT_VERSION && this.buffer.getLong(8) == key)
+            {
+                for (int i = 0; i < PRESENCE_WORDS; ++i)
+                {
+                    this.presence.set(i, this.buffer.getInt(PRESENCE_OFFSET + i * 4));
+                }
+            }
+            else
+            {
+                for (int i = 0; i < PRESENCE_WORDS; ++i)
+                {
+                    this.buffer.putInt(PRESENCE_OFFSET + i * 4, 0);
+                }
+
+                this.buffer.putInt(0, MAGIC);
+                this.buffer.putInt(4, FORMAT_VERSION);
+                this.buffer.putLong(8, key);
+            }
+        }
+
+        private boolean isPresent(int tile)
+        {
+            return (this.presence.get(tile >> 5) & (1 << (tile & 31))) != 0;
+        }
+
+        private void setPresent(int tile)
+        {
+            int word = tile >> 5;
+            int bit = 1 << (tile & 31);
+            int value;
+
+            do
+            {
+                value = this.presence.get(word);
+                if ((value & bit) != 0) return;
+            }
+            while (!this.presence.compareAndSet(word, value, value | bit));
+
+            // Always write the latest value, so concurrent writers to the same word can't lose bits
+            synchronized (this)
+            {
+                this.buffer.putInt(PRESENCE_OFFSET + word * 4, this.presence.get(word));
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import biomesoplenty.init.ModConfig;
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.util.math.ChunkPos;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * A bounded cache of final biome ids at quart resolution, shared by every thread asking a biome provider
+ * for biomes. Ids are stored in 8x8 tiles, each compressed against a palette of the biomes it contains.
+ * Tiles are never modified once published, so reads don't lock.
+ *
+ * The cache is two-way set associative. New tiles go in the first way of their set and push its previous
+ * tile into the second, evicting whatever was there.
+ */
+public class BiomeTileCache
+{
+    public static final int TILE_BITS = 3;
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int TILE_AREA = TILE_SIZE * TILE_SIZE;
+    private static final int WAYS = 2;
+
+    private final AtomicReferenceArray<Tile> tiles;
+    private final int setMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /***
+     * @param capacity the most tiles to keep, rounded up to a power of two
+     */
+    public BiomeTileCache(int capacity)
+    {
+        int sets = HashCommon.nextPowerOfTwo(Math.max(1, capacity / WAYS));
+        this.tiles = new AtomicReferenceArray<>(sets * WAYS);
+        this.setMask = sets - 1;
+    }
+
+    /***
+     * Returns null if the cache is disabled in the config.
+     */
+    @Nullable
+    public static BiomeTileCache fromConfig()
+    {
+        int capacity = ModConfig.GenerationConfig.biomeCacheTiles.get();
+        return capacity > 0 ? new BiomeTileCache(capacity) : null;
+    }
+
+    public int getId(int x, int z, RegionFunction compute)
+    {
+        Tile tile = this.getTile(x >> TILE_BITS, z >> TILE_BITS, compute);
+        return tile.get((x & TILE_MASK) + ((z & TILE_MASK) << TILE_BITS));
+    }
+
+    /***
+     * Fills out with the ids of a width by depth region starting at x, z, in row-major order.
+     * A new array is allocated if out is null or too small.
+     */
+    public int[] getIds(@Nullable int[] out, int x, int z, int width, int depth, RegionFunction compute)
+    {
+        int size = width * depth;
+        if (out == null || out.length < size) out = new int[size];
+
+        for (int tileZ = z >> TILE_BITS; tileZ <= (z + depth - 1) >> TILE_BITS; ++tileZ)
+        {
+            for (int tileX = x >> TILE_BITS; tileX <= (x + width - 1) >> TILE_BITS; ++tileX)
+            {
+                Tile tile = this.getTile(tileX, tileZ, compute);
+                int minX = Math.max(x, tileX << TILE_BITS);
+                int minZ = Math.max(z, tileZ << TILE_BITS);
+                int maxX = Math.min(x + width, (tileX + 1) << TILE_BITS);
+                int maxZ = Math.min(z + depth, (tileZ + 1) << TILE_BITS);
+
+                for (int posZ = minZ; posZ < maxZ; ++posZ)
+                {
+                    for (int posX = minX; posX < maxX; ++posX)
+                    {
+                        out[(posX - x) + (posZ - z) * width] = tile.get((posX & TILE_MASK) + ((posZ & TILE_MASK) << TILE_BITS));
+                    }
+                }
+            }
+        }
+
+        return out;
+    }
+
+    private Tile getTile(int tileX, int tileZ, RegionFunction compute)
+    {
+        long key = ChunkPos.asLong(tileX, tileZ);
+        int first = ((int)HashCommon.mix(key) & this.setMask) * WAYS;
+
+        Tile tile = this.tiles.get(first);
+        if (tile == null || tile.key != key) tile = this.tiles.get(first + 1);
+
+        if (tile != null && tile.key == key)
+        {
+            this.hits.increment();
+            return tile;
+        }
+
+        this.misses.increment();
+
+        // Computed without locking, two threads filling the same tile get the same result anyway
+        int[] ids = compute.apply(new int[TILE_AREA], tileX << TILE_BITS, tileZ << TILE_BITS, TILE_SIZE, TILE_SIZE);
+        tile = new Tile(key, ids);
+
+        Tile demoted = this.tiles.getAndSet(first, tile);
+        if (demoted != null && this.tiles.getAndSet(first + 1, demoted) != null) this.evictions.increment();
+
+        return tile;
+    }
+
+    public long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return this.misses.sum();
+    }
+
+    public long getEvictions()
+    {
+        return this.evictions.sum();
+    }
+
+    public int getCapacity()
+    {
+        return this.tiles.length();
+    }
+
+    public interface RegionFunction
+    {
+        int[] apply(int[] out, int x, int z, int width, int depth);
+    }
+
+    private static class Tile
+    {
+        private final long key;
+        private final int[] palette;
+        // Indices into the palette, packed into longs. Bits per entry is a power of two so none straddle two longs
+        private final long[] data;
+        private final int bits;
+        private final long mask;
+
+        private Tile(long key, int[] ids)
+        {
+            int[] palette = new int[TILE_AREA];
+            int paletteSize = 0;
+            int[] indices = new int[TILE_AREA];
+
+            for (int i = 0; i < TILE_AREA; ++i)
+            {
+                int index = 0;
+                while (index < paletteSize && palette[index] != ids[i]) ++index;
+                if (index == paletteSize) palette[paletteSize++] = ids[i];
+                indices[i] = index;
+            }
+
+            int bits = 0;
+            while ((1 << bits) < paletteSize) bits = bits == 0 ? 1 : bits * 2;
+
+            this.key = key;
+            this.palette = Arrays.copyOf(palette, paletteSize);
+            this.bits = bits;
+            this.mask = (1L << bits) - 1;
+            this.data = new long[bits];
+
+            if (bits > 0)
+            {
+                for (int i = 0; i < TILE_AREA; ++i)
+                {
+                    int bit = i * bits;
+                    this.data[bit >> 6] |= (long)indices[i] << (bit & 63);
+                }
+            }
+        }
+
+        private int get(int index)
+        {
+            if (this.bits == 0) return this.palette[0];
+
+            int bit = index * this.bits;
+            return this.palette[(int)((this.data[bit >> 6] >>> (bit & 63)) & this.mask)];
+        }
+    }
+}
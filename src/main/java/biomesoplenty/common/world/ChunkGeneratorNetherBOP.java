@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeContainer;
+import net.minecraft.world.biome.BiomeManager;
+import net.minecraft.world.biome.provider.BiomeProvider;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.GenerationStage;
+import net.minecraft.world.gen.NetherChunkGenerator;
+import net.minecraft.world.gen.NetherGenSettings;
+import net.minecraft.world.gen.WorldGenRegion;
+
+public class ChunkGeneratorNetherBOP extends NetherChunkGenerator implements IBOPChunkGenerator
+{
+    private final GenerationTimings timings = new GenerationTimings();
+
+    public ChunkGeneratorNetherBOP(World world, BiomeProvider provider, NetherGenSettings settings)
+    {
+        super(world, provider, settings);
+    }
+
+    @Override
+    public void createBiomes(IChunk chunk)
+    {
+        long startTime = System.nanoTime();
+        // Sample each column once instead of once per vertical cell
+        BiomeContainer biomes = ColumnBiomeProvider.createContainer(chunk.getPos(), this.biomeSource);
+        ((ChunkPrimer)chunk).setBiomes(biomes);
+        BiomeLocationIndex.recordChunk(this.level, chunk.getPos(), biomes);
+        if (this.biomeSource instanceof IBOPBiomeProvider) ((IBOPBiomeProvider)this.biomeSource).storeChunk(chunk.getPos());
+        this.timings.record(GenerationTimings.Stage.BIOMES, startTime);
+    }
+
+    @Override
+    public void fillFromNoise(IWorld world, IChunk chunk)
+    {
+        long startTime = System.nanoTime();
+        super.fillFromNoise(world, chunk);
+        this.timings.record(GenerationTimings.Stage.NOISE, startTime);
+    }
+
+    @Override
+    public void buildSurfaceAndBedrock(WorldGenRegion region, IChunk chunk)
+    {
+        long startTime = System.nanoTime();
+        super.buildSurfaceAndBedrock(region, chunk);
+        this.timings.record(GenerationTimings.Stage.SURFACE, startTime);
+    }
+
+    @Override
+    public void applyCarvers(BiomeManager biomeManager, IChunk chunk, GenerationStage.Carving carving)
+    {
+        long startTime = System.nanoTime();
+        super.applyCarvers(biomeManager, chunk, carving);
+        this.timings.record(carving == GenerationStage.Carving.AIR ? GenerationTimings.Stage.CARVERS : GenerationTimings.Stage.LIQUID_CARVERS, startTime);
+    }
+
+    @Override
+    public void applyBiomeDecoration(WorldGenRegion region)
+    {
+        long startTime = System.nanoTime();
+        super.applyBiomeDecoration(region);
+        this.timings.record(GenerationTimings.Stage.FEATURES, startTime);
+    }
+
+    @Override
+    public GenerationTimings getTimings()
+    {
+        return this.timings;
+    }
+}
@@ -8,14 +8,80 @@
 package biomesoplenty.common.world;
 
 import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.BiomeContainer;
+import net.minecraft.world.biome.BiomeManager;
 import net.minecraft.world.biome.provider.BiomeProvider;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.GenerationStage;
 import net.minecraft.world.gen.OverworldChunkGenerator;
 import net.minecraft.world.gen.OverworldGenSettings;
+import net.minecraft.world.gen.WorldGenRegion;
 
-public class ChunkGeneratorOverworldBOP extends OverworldChunkGenerator
+public class ChunkGeneratorOverworldBOP extends OverworldChunkGenerator implements IBOPChunkGenerator
 {
+    // Enough noise columns for a few hundred chunks
+    private final DepthScaleCache depthScaleCache = new DepthScaleCache(16384);
+    private final GenerationTimings timings = new GenerationTimings();
+
     public ChunkGeneratorOverworldBOP(IWorld world, BiomeProvider provider, BOPOverworldGenSettings settings)
     {
         super(world, provider, settings);
     }
+
+    @Override
+    protected double[] getDepthAndScale(int noiseX, int noiseZ)
+    {
+        return this.depthScaleCache.get(noiseX, noiseZ, super::getDepthAndScale);
+    }
+
+    @Override
+    public void createBiomes(IChunk chunk)
+    {
+        long startTime = System.nanoTime();
+        // Sample each column once instead of once per vertical cell
+        BiomeContainer biomes = ColumnBiomeProvider.createContainer(chunk.getPos(), this.biomeSource);
+        ((ChunkPrimer)chunk).setBiomes(biomes);
+        BiomeLocationIndex.recordChunk(this.level, chunk.getPos(), biomes);
+        if (this.biomeSource instanceof IBOPBiomeProvider) ((IBOPBiomeProvider)this.biomeSource).storeChunk(chunk.getPos());
+        this.timings.record(GenerationTimings.Stage.BIOMES, startTime);
+    }
+
+    @Override
+    public void fillFromNoise(IWorld world, IChunk chunk)
+    {
+        long startTime = System.nanoTime();
+        super.fillFromNoise(world, chunk);
+        this.timings.record(GenerationTimings.Stage.NOISE, startTime);
+    }
+
+    @Override
+    public void buildSurfaceAndBedrock(WorldGenRegion region, IChunk chunk)
+    {
+        long startTime = System.nanoTime();
+        super.buildSurfaceAndBedrock(region, chunk);
+        this.timings.record(GenerationTimings.Stage.SURFACE, startTime);
+    }
+
+    @Override
+    public void applyCarvers(BiomeManager biomeManager, IChunk chunk, GenerationStage.Carving carving)
+    {
+        long startTime = System.nanoTime();
+        super.applyCarvers(biomeManager, chunk, carving);
+        this.timings.record(carving == GenerationStage.Carving.AIR ? GenerationTimings.Stage.CARVERS : GenerationTimings.Stage.LIQUID_CARVERS, startTime);
+    }
+
+    @Override
+    public void applyBiomeDecoration(WorldGenRegion region)
+    {
+        long startTime = System.nanoTime();
+        super.applyBiomeDecoration(region);
+        this.timings.record(GenerationTimings.Stage.FEATURES, startTime);
+    }
+
+    @Override
+    public GenerationTimings getTimings()
+    {
+        return this.timings;
+    }
 }
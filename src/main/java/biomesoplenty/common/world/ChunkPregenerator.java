@@ -0,0 +1,558 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import biomesoplenty.core.BiomesOPlenty;
+import biomesoplenty.init.ModConfig;
+import com.google.common.collect.Maps;
+import com.mojang.datafixers.util.Either;
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import net.minecraft.command.CommandSource;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraft.world.biome.provider.BiomeProvider;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.server.ChunkHolder;
+import net.minecraft.world.server.ServerChunkProvider;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.server.TicketType;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Generates a square of chunks around a point to FULL status, a few at a time from the end of each server
+ * tick. Each tick only spends a configured number of milliseconds issuing requests and handling finished
+ * chunks, and no new chunks are requested while the server is already struggling to keep up.
+ *
+ * Chunks are requested by adding a ticket, which makes the chunk manager generate them as it would for a
+ * player. Their futures are never waited on, only checked for completion once a tick.
+ *
+ * The position reached is kept in the world's saved data, so pregeneration carries on after a restart.
+ * Everything here runs on the server thread.
+ */
+@Mod.EventBusSubscriber
+public class ChunkPregenerator extends WorldSavedData
+{
+    private static final String NAME = "biomesoplenty_pregen";
+    // Server ticks are meant to take 50 milliseconds
+    private static final long TICK_MILLIS = 50L;
+    // Loads requested chunks to FULL status and keeps them loaded until they finish
+    private static final TicketType<ChunkPos> PREGEN_TICKET = TicketType.create("biomesoplenty:pregen", Comparator.comparingLong(ChunkPos::toLong));
+
+    private static final Map<ServerWorld, ChunkPregenerator> LOADED = Maps.newHashMap();
+
+    private ServerWorld world;
+
+    // Saved
+    private boolean active;
+    private boolean paused;
+    private Shape shape = Shape.SPIRAL;
+    private int centerX;
+    private int centerZ;
+    private int radius;
+    // Every chunk before this in the shape's order has been generated
+    private long completed;
+    private long generated;
+    private long failed;
+
+    // Reset whenever pregeneration is started, resumed or loaded
+    private boolean sessionStarted;
+    private long issued;
+    private final Long2ObjectSortedMap<Request> pending = new Long2ObjectAVLTreeMap<>();
+    @Nullable
+    private CommandSource listener;
+    private long sessionGenerated;
+    private long activeNanos;
+    private long lastTickTime;
+    private long nextReportTime;
+    private long waitNanos;
+    private long tickNanos;
+    private long tickCount;
+    @Nullable
+    private GenerationTimings.Snapshot stageStart;
+
+    public ChunkPregenerator()
+    {
+        super(NAME);
+    }
+
+    @Nullable
+    public static ChunkPregenerator get(ServerWorld world)
+    {
+        return LOADED.get(world);
+    }
+
+    @SubscribeEvent
+    public static void onWorldLoad(WorldEvent.Load event)
+    {
+        if (event.getWorld() instanceof ServerWorld)
+        {
+            ServerWorld world = (ServerWorld)event.getWorld();
+            ChunkPregenerator pregenerator = world.getDataStorage().computeIfAbsent(ChunkPregenerator::new, NAME);
+            pregenerator.world = world;
+            LOADED.put(world, pregenerator);
+
+            if (pregenerator.active && !pregenerator.paused)
+            {
+                BiomesOPlenty.logger.info("Resuming pregeneration of " + world.getDimension().getType().getRegistryName() + " at " + pregenerator.completed + " of " + pregenerator.getTotal() + " chunks");
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event)
+    {
+        LOADED.remove(event.getWorld());
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event)
+    {
+        if (event.phase != TickEvent.Phase.END)
+            return;
+
+        for (ChunkPregenerator pregenerator : LOADED.values())
+        {
+            pregenerator.tick();
+        }
+    }
+
+    /***
+     * Starts pregenerating the chunks within radius chunks of a chunk, reporting progress to listener.
+     */
+    public void start(CommandSource listener, Shape shape, int centerX, int centerZ, int radius)
+    {
+        this.active = true;
+        this.paused = false;
+        this.shape = shape;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.completed = 0;
+        this.generated = 0;
+        this.failed = 0;
+        this.beginSession(listener);
+        this.setDirty();
+    }
+
+    // Chunks which have already been requested still finish
+    public void pause()
+    {
+        this.paused = true;
+        this.lastTickTime = 0;
+        this.setDirty();
+    }
+
+    public void resume(CommandSource listener)
+    {
+        this.paused = false;
+        this.beginSession(listener);
+        this.setDirty();
+    }
+
+    public void stop()
+    {
+        this.active = false;
+        this.paused = false;
+        this.releasePending();
+        this.listener = null;
+        this.setDirty();
+    }
+
+    private void beginSession(@Nullable CommandSource listener)
+    {
+        this.sessionStarted = true;
+        this.issued = this.completed;
+        this.releasePending();
+        this.listener = listener;
+        this.sessionGenerated = 0;
+        this.activeNanos = 0;
+        this.lastTickTime = 0;
+        this.nextReportTime = System.nanoTime() + this.getReportInterval();
+        this.waitNanos = 0;
+        this.tickNanos = 0;
+        this.tickCount = 0;
+        this.stageStart = this.getStageTimings();
+    }
+
+    private void tick()
+    {
+        if (!this.active)
+            return;
+
+        long startTime = System.nanoTime();
+        if (!this.sessionStarted) this.beginSession(null);
+
+        this.handleResults();
+
+        if (!this.paused)
+        {
+            if (this.lastTickTime != 0) this.activeNanos += startTime - this.lastTickTime;
+            this.lastTickTime = startTime;
+
+            long budget = TimeUnit.MILLISECONDS.toNanos(ModConfig.GenerationConfig.pregenTickBudget.get());
+            int maxPending = ModConfig.GenerationConfig.pregenMaxPending.get();
+
+            if (getAverageTickNanos(this.world.getServer()) <= TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS) - budget)
+            {
+                boolean requested = false;
+
+                while (this.pending.size() < maxPending && this.issued < this.getTotal() && System.nanoTime() - startTime < budget)
+                {
+                    this.request(this.issued++);
+                    requested = true;
+                }
+
+                // Creates chunk holders for the new tickets, so their futures are available next tick
+                if (requested) this.world.getChunkSource().runDistanceManagerUpdates();
+            }
+        }
+
+        this.tickNanos += System.nanoTime() - startTime;
+        this.tickCount++;
+
+        if (this.completed >= this.getTotal())
+        {
+            this.report(new TranslationTextComponent("commands.biomesoplenty.pregen.finished", this.generated, formatDuration(this.activeNanos)));
+            this.reportTimings();
+            this.stop();
+        }
+        else if (!this.paused && System.nanoTime() >= this.nextReportTime)
+        {
+            this.report(this.getProgress());
+            this.nextReportTime = System.nanoTime() + this.getReportInterval();
+        }
+    }
+
+    private void request(long index)
+    {
+        ChunkPos pos = this.getChunkPos(index);
+        this.pending.put(index, new Request(System.nanoTime()));
+        this.world.getChunkSource().addRegionTicket(PREGEN_TICKET, pos, 0, pos);
+    }
+
+    private void handleResults()
+    {
+        ServerChunkProvider chunkSource = this.world.getChunkSource();
+        Iterator<Long2ObjectMap.Entry<Request>> iterator = this.pending.long2ObjectEntrySet().iterator();
+        boolean changed = false;
+
+        while (iterator.hasNext())
+        {
+            Long2ObjectMap.Entry<Request> entry = iterator.next();
+            Request request = entry.getValue();
+            ChunkPos pos = this.getChunkPos(entry.getLongKey());
+
+            if (request.future == null)
+            {
+                ChunkHolder holder = chunkSource.chunkMap.getVisibleChunkIfPresent(pos.toLong());
+                if (holder == null) continue;
+
+                request.future = holder.getFullChunkFuture();
+            }
+
+            if (!request.future.isDone())
+                continue;
+
+            iterator.remove();
+            chunkSource.removeRegionTicket(PREGEN_TICKET, pos, 0, pos);
+
+            if (!request.future.isCompletedExceptionally() && request.future.join().left().isPresent())
+            {
+                this.generated++;
+                this.sessionGenerated++;
+            }
+            else
+            {
+                this.failed++;
+                BiomesOPlenty.logger.warn("Failed to pregenerate chunk " + pos);
+            }
+
+            this.waitNanos += System.nanoTime() - request.requestTime;
+            changed = true;
+        }
+
+        if (changed)
+        {
+            this.completed = this.pending.isEmpty() ? this.issued : this.pending.firstLongKey();
+            this.setDirty();
+        }
+    }
+
+    // Lets chunks which haven't finished yet unload, if nothing else needs them
+    private void releasePending()
+    {
+        for (long index : this.pending.keySet())
+        {
+            ChunkPos pos = this.getChunkPos(index);
+            this.world.getChunkSource().removeRegionTicket(PREGEN_TICKET, pos, 0, pos);
+        }
+
+        this.pending.clear();
+    }
+
+    /***
+     * Sends the progress and the time spent in each stage so far to source.
+     */
+    public void sendStatus(CommandSource source)
+    {
+        source.sendSuccess(this.paused ? new TranslationTextComponent("commands.biomesoplenty.pregen.paused", this.completed, this.getTotal()) : this.getProgress(), false);
+
+        for (ITextComponent line : this.getTimings())
+        {
+            source.sendSuccess(line, false);
+        }
+    }
+
+    private ITextComponent getProgress()
+    {
+        long total = this.getTotal();
+        double seconds = this.activeNanos / 1.0E9D;
+        double rate = seconds > 0.0D ? this.sessionGenerated / seconds : 0.0D;
+        String eta = rate > 0.0D ? formatDuration((long)((total - this.completed) / rate * 1.0E9D)) : "?";
+        return new TranslationTextComponent("commands.biomesoplenty.pregen.progress", this.completed, total, String.format(Locale.ROOT, "%.1f", this.completed * 100.0D / total), String.format(Locale.ROOT, "%.1f", rate), eta, this.failed);
+    }
+
+    // Pregeneration's own costs, then those of each generation stage if the generator records them
+    private ITextComponent[] getTimings()
+    {
+        long finished = this.sessionGenerated + this.failed;
+        GenerationTimings.Snapshot stages = this.getStageTimings();
+        GenerationTimings.Stage[] values = GenerationTimings.Stage.values();
+        BiomeTileCache biomeCache = this.getBiomeCache();
+        int stageCount = stages != null && this.stageStart != null ? values.length : 0;
+        ITextComponent[] lines = new ITextComponent[3 + stageCount + (biomeCache != null ? 1 : 0)];
+
+        lines[0] = new TranslationTextComponent("commands.biomesoplenty.pregen.timings");
+        lines[1] = new TranslationTextComponent("commands.biomesoplenty.pregen.timing", "request", formatMillis(finished > 0 ? this.waitNanos / 1.0E6D / finished : 0.0D), finished);
+        lines[2] = new TranslationTextComponent("commands.biomesoplenty.pregen.timing", "tick", formatMillis(this.tickCount > 0 ? this.tickNanos / 1.0E6D / this.tickCount : 0.0D), this.tickCount);
+
+        if (stageCount > 0)
+        {
+            stages = stages.since(this.stageStart);
+
+            for (GenerationTimings.Stage stage : values)
+            {
+                lines[3 + stage.ordinal()] = new TranslationTextComponent("commands.biomesoplenty.pregen.timing", stage.name().toLowerCase(Locale.ROOT), formatMillis(stages.getAverageMillis(stage)), stages.getCount(stage));
+            }
+        }
+
+        // Counted since the world loaded, across everything which reads biomes and not just pregeneration
+        if (biomeCache != null)
+        {
+            long hits = biomeCache.getHits();
+            long lookups = hits + biomeCache.getMisses();
+            lines[3 + stageCount] = new TranslationTextComponent("commands.biomesoplenty.pregen.biome_cache", hits, lookups, String.format(Locale.ROOT, "%.1f", lookups > 0 ? hits * 100.0D / lookups : 0.0D), biomeCache.getEvictions(), biomeCache.getCapacity());
+        }
+
+        return lines;
+    }
+
+    private void reportTimings()
+    {
+        for (ITextComponent line : this.getTimings())
+        {
+            this.report(line);
+        }
+    }
+
+    private void report(ITextComponent message)
+    {
+        BiomesOPlenty.logger.info(message.getString());
+        if (this.listener != null) this.listener.sendSuccess(message, false);
+    }
+
+    @Nullable
+    private GenerationTimings.Snapshot getStageTimings()
+    {
+        ChunkGenerator<?> generator = this.world.getChunkSource().getGenerator();
+        return generator instanceof IBOPChunkGenerator ? ((IBOPChunkGenerator)generator).getTimings().snapshot() : null;
+    }
+
+    @Nullable
+    private BiomeTileCache getBiomeCache()
+    {
+        BiomeProvider provider = this.world.getChunkSource().getGenerator().getBiomeSource();
+        return provider instanceof IBOPBiomeProvider ? ((IBOPBiomeProvider)provider).getBiomeCache() : null;
+    }
+
+    private long getReportInterval()
+    {
+        return TimeUnit.SECONDS.toNanos(ModConfig.GenerationConfig.pregenReportInterval.get());
+    }
+
+    public boolean isActive()
+    {
+        return this.active;
+    }
+
+    public boolean isPaused()
+    {
+        return this.paused;
+    }
+
+    public long getCompleted()
+    {
+        return this.completed;
+    }
+
+    public long getTotal()
+    {
+        long side = this.radius * 2L + 1;
+        return side * side;
+    }
+
+    public ChunkPos getChunkPos(long index)
+    {
+        ChunkPos offset = this.shape.getOffset(index, this.radius);
+        return new ChunkPos(this.centerX + offset.x, this.centerZ + offset.z);
+    }
+
+    @Override
+    public void load(CompoundNBT nbt)
+    {
+        this.active = nbt.getBoolean("active");
+        this.paused = nbt.getBoolean("paused");
+        this.shape = Shape.byName(nbt.getString("shape"));
+        this.centerX = nbt.getInt("center_x");
+        this.centerZ = nbt.getInt("center_z");
+        this.radius = nbt.getInt("radius");
+        this.completed = nbt.getLong("completed");
+        this.generated = nbt.getLong("generated");
+        this.failed = nbt.getLong("failed");
+    }
+
+    @Override
+    public CompoundNBT save(CompoundNBT nbt)
+    {
+        nbt.putBoolean("active", this.active);
+        nbt.putBoolean("paused", this.paused);
+        nbt.putString("shape", this.shape.getName());
+        nbt.putInt("center_x", this.centerX);
+        nbt.putInt("center_z", this.centerZ);
+        nbt.putInt("radius", this.radius);
+        nbt.putLong("completed", this.completed);
+        nbt.putLong("generated", this.generated);
+        nbt.putLong("failed", this.failed);
+        return nbt;
+    }
+
+    private static long getAverageTickNanos(MinecraftServer server)
+    {
+        long total = 0;
+
+        for (long time : server.tickTimes)
+        {
+            total += time;
+        }
+
+        return total / server.tickTimes.length;
+    }
+
+    private static String formatDuration(long nanos)
+    {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private static String formatMillis(double millis)
+    {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+
+    /***
+     * The order chunks are generated in. Both cover the same square.
+     */
+    public enum Shape
+    {
+        // Square rings outwards from the centre, so the generated area is always around the centre
+        SPIRAL
+        {
+            @Override
+            ChunkPos getOffset(long index, int radius)
+            {
+                if (index == 0)
+                    return new ChunkPos(0, 0);
+
+                // Ring k covers indices from (2k - 1)^2 up to (2k + 1)^2
+                int ring = ((int)Math.sqrt(index) + 1) / 2;
+                while ((2L * ring - 1) * (2L * ring - 1) > index) --ring;
+                while ((2L * ring + 1) * (2L * ring + 1) <= index) ++ring;
+
+                long offset = index - (2L * ring - 1) * (2L * ring - 1);
+                int side = (int)(offset / (2 * ring));
+                int step = (int)(offset % (2 * ring));
+
+                switch (side)
+                {
+                    case 0: return new ChunkPos(-ring + step, -ring);
+                    case 1: return new ChunkPos(ring, -ring + step);
+                    case 2: return new ChunkPos(ring - step, ring);
+                    default: return new ChunkPos(-ring, ring - step);
+                }
+            }
+        },
+        // Rows from the north west corner, reading biome tiles and region files in order
+        SQUARE
+        {
+            @Override
+            ChunkPos getOffset(long index, int radius)
+            {
+                int side = radius * 2 + 1;
+                return new ChunkPos((int)(index % side) - radius, (int)(index / side) - radius);
+            }
+        };
+
+        abstract ChunkPos getOffset(long index, int radius);
+
+        public String getName()
+        {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Shape byName(String name)
+        {
+            for (Shape shape : values())
+            {
+                if (shape.getName().equals(name)) return shape;
+            }
+
+            return SPIRAL;
+        }
+    }
+
+    private static class Request
+    {
+        private final long requestTime;
+        // Set once the chunk's holder exists
+        @Nullable
+        private CompletableFuture<Either<Chunk, ChunkHolder.IChunkLoadingError>> future;
+
+        private Request(long requestTime)
+        {
+            this.requestTime = requestTime;
+        }
+    }
+}
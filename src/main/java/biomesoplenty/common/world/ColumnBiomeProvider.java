@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeContainer;
+import net.minecraft.world.biome.provider.BiomeProvider;
+
+import java.util.Collections;
+
+/***
+ * Serves a chunk's 4x4 grid of noise biomes at every height. BOP biomes don't vary vertically,
+ * so a biome container can be filled from a single 2D sample rather than one lookup per cell.
+ */
+public class ColumnBiomeProvider extends BiomeProvider
+{
+    private final int minX;
+    private final int minZ;
+    private final Biome[] biomes;
+
+    private ColumnBiomeProvider(int minX, int minZ, Biome[] biomes)
+    {
+        super(Collections.emptySet());
+        this.minX = minX;
+        this.minZ = minZ;
+        this.biomes = biomes;
+    }
+
+    @Override
+    public Biome getNoiseBiome(int x, int y, int z)
+    {
+        return this.biomes[(x - this.minX) + (z - this.minZ) * 4];
+    }
+
+    public static BiomeContainer createContainer(ChunkPos pos, BiomeProvider provider)
+    {
+        if (!(provider instanceof IBOPBiomeProvider))
+        {
+            return new BiomeContainer(pos, provider);
+        }
+
+        int minX = pos.getMinBlockX() >> 2;
+        int minZ = pos.getMinBlockZ() >> 2;
+        Biome[] biomes = ((IBOPBiomeProvider)provider).getNoiseBiomes(null, minX, minZ, 4, 4);
+        return new BiomeContainer(pos, new ColumnBiomeProvider(minX, minZ, biomes));
+    }
+}
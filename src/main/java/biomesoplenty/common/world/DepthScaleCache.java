@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+
+/***
+ * A bounded cache of the blended depth and scale of noise columns. Columns along chunk borders are
+ * used by both neighbouring chunks, and each column otherwise costs 25 biome lookups.
+ * Split into stripes so that generation threads rarely wait on each other.
+ */
+public class DepthScaleCache
+{
+    private static final int STRIPES = 16;
+
+    private final Long2ObjectLinkedOpenHashMap<double[]>[] stripes;
+    private final int stripeCapacity;
+
+    @SuppressWarnings("unchecked")
+    public DepthScaleCache(int capacity)
+    {
+        this.stripes = new Long2ObjectLinkedOpenHashMap[STRIPES];
+        this.stripeCapacity = Math.max(1, capacity / STRIPES);
+
+        for (int i = 0; i < STRIPES; ++i)
+        {
+            this.stripes[i] = new Long2ObjectLinkedOpenHashMap<>();
+        }
+    }
+
+    /***
+     * Returns the cached values for a column, computing them if necessary. The returned array must not be modified.
+     */
+    public double[] get(int noiseX, int noiseZ, ColumnFunction compute)
+    {
+        long key = ChunkPos.asLong(noiseX, noiseZ);
+        Long2ObjectLinkedOpenHashMap<double[]> stripe = this.stripes[(noiseX ^ noiseZ * 31) & (STRIPES - 1)];
+        double[] values;
+
+        synchronized (stripe)
+        {
+            values = stripe.get(key);
+        }
+
+        if (values != null) return values;
+
+        // Computed outside of the lock, two threads computing the same column get the same result anyway
+        values = compute.apply(noiseX, noiseZ);
+
+        synchronized (stripe)
+        {
+            stripe.put(key, values);
+
+            if (stripe.size() > this.stripeCapacity)
+            {
+                stripe.removeFirst();
+            }
+        }
+
+        return values;
+    }
+
+    public interface ColumnFunction
+    {
+        double[] apply(int noiseX, int noiseZ);
+    }
+}
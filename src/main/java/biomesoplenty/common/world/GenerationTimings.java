@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Accumulates the time a chunk generator spends in each stage of generation. Stages are named after the
+ * chunk statuses which run them, and may be recorded from any number of generation threads.
+ */
+public class GenerationTimings
+{
+    private final LongAdder[] nanos = new LongAdder[Stage.values().length];
+    private final LongAdder[] counts = new LongAdder[Stage.values().length];
+
+    public GenerationTimings()
+    {
+        for (int i = 0; i < Stage.values().length; ++i)
+        {
+            this.nanos[i] = new LongAdder();
+            this.counts[i] = new LongAdder();
+        }
+    }
+
+    /***
+     * Records a run of a stage which began at startTime, as given by System.nanoTime.
+     */
+    public void record(Stage stage, long startTime)
+    {
+        this.nanos[stage.ordinal()].add(System.nanoTime() - startTime);
+        this.counts[stage.ordinal()].increment();
+    }
+
+    public Snapshot snapshot()
+    {
+        long[] nanos = new long[Stage.values().length];
+        long[] counts = new long[Stage.values().length];
+
+        for (int i = 0; i < Stage.values().length; ++i)
+        {
+            nanos[i] = this.nanos[i].sum();
+            counts[i] = this.counts[i].sum();
+        }
+
+        return new Snapshot(nanos, counts);
+    }
+
+    public enum Stage
+    {
+        BIOMES, NOISE, SURFACE, CARVERS, LIQUID_CARVERS, FEATURES
+    }
+
+    public static class Snapshot
+    {
+        private final long[] nanos;
+        private final long[] counts;
+
+        private Snapshot(long[] nanos, long[] counts)
+        {
+            this.nanos = nanos;
+            this.counts = counts;
+        }
+
+        // The runs recorded after an earlier snapshot
+        public Snapshot since(Snapshot earlier)
+        {
+            long[] nanos = new long[this.nanos.length];
+            long[] counts = new long[this.counts.length];
+
+            for (int i = 0; i < nanos.length; ++i)
+            {
+                nanos[i] = this.nanos[i] - earlier.nanos[i];
+                counts[i] = this.counts[i] - earlier.counts[i];
+            }
+
+            return new Snapshot(nanos, counts);
+        }
+
+        public long getCount(Stage stage)
+        {
+            return this.counts[stage.ordinal()];
+        }
+
+        // In milliseconds, or 0 if the stage hasn't run
+        public double getAverageMillis(Stage stage)
+        {
+            long count = this.counts[stage.ordinal()];
+            return count > 0 ? this.nanos[stage.ordinal()] / 1.0E6D / count : 0.0D;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.Biomes;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * Region queries for BOP biome providers. Coordinates are in noise (quarter block) resolution,
+ * matching getNoiseBiome, and results are stored in row-major order.
+ */
+public interface IBOPBiomeProvider
+{
+    NoiseBiomeSource getNoiseBiomeSource();
+
+    default int[] getNoiseBiomeIds(@Nullable int[] out, int x, int z, int width, int depth)
+    {
+        return this.getNoiseBiomeSource().getIds(out, x, z, width, depth);
+    }
+
+    // Equivalent to getNoiseBiomeIds, but computes the ids without reading or filling the biome cache or store
+    default int[] computeNoiseBiomeIds(@Nullable int[] out, int x, int z, int width, int depth)
+    {
+        return this.getNoiseBiomeSource().computeIds(out, x, z, width, depth);
+    }
+
+    default Biome[] getNoiseBiomes(@Nullable Biome[] out, int x, int z, int width, int depth)
+    {
+        return this.getNoiseBiomeSource().getBiomes(out, x, z, width, depth);
+    }
+
+    default BiomePresenceIndex getPresenceIndex()
+    {
+        return this.getNoiseBiomeSource().getPresenceIndex();
+    }
+
+    @Nullable
+    default BiomeTileCache getBiomeCache()
+    {
+        return this.getNoiseBiomeSource().getBiomeCache();
+    }
+
+    // Where finished biomes are saved, if anywhere
+    @Nullable
+    default BiomeRegionStore getRegionStore()
+    {
+        return this.getNoiseBiomeSource().getRegionStore();
+    }
+
+    /***
+     * Saves the biomes around a newly generated chunk in the region store. Other queries only ever read
+     * from the store, so searches and sampling far from generated terrain don't fill the world folder.
+     */
+    default void storeChunk(ChunkPos pos)
+    {
+        BiomeRegionStore store = this.getRegionStore();
+        if (store == null) return;
+
+        int tileX = (pos.x << 2) >> BiomeTileCache.TILE_BITS;
+        int tileZ = (pos.z << 2) >> BiomeTileCache.TILE_BITS;
+        if (store.contains(tileX, tileZ)) return;
+
+        int[] ids = this.getNoiseBiomeIds(null, tileX << BiomeTileCache.TILE_BITS, tileZ << BiomeTileCache.TILE_BITS, BiomeTileCache.TILE_SIZE, BiomeTileCache.TILE_SIZE);
+        store.write(tileX, tileZ, ids);
+    }
+
+    /***
+     * Equivalent to BiomeProvider.findBiomeHorizontal, but reads biomes a strip of rows at a time and
+     * checks ids against a table rather than searching the list for every position. Matches are visited in
+     * the same order and draw from random in the same way, so the result is identical for the same seed.
+     */
+    @Nullable
+    default BlockPos findNoiseBiomeHorizontal(int x, int y, int z, int radius, List<Biome> biomes, Random random)
+    {
+        int centerX = x >> 2;
+        int centerZ = z >> 2;
+        int noiseRadius = radius >> 2;
+        int size = noiseRadius * 2 + 1;
+        int stripDepth = Math.max(1, Math.min(size, 4096 / size));
+
+        // Whether each biome id is one we're looking for. getNoiseBiome treats unregistered ids as the default biome
+        boolean defaultAllowed = biomes.contains(Biomes.DEFAULT);
+        int maxId = 0;
+        for (Biome biome : Registry.BIOME) maxId = Math.max(maxId, Registry.BIOME.getId(biome));
+        boolean[] allowed = new boolean[maxId + 1];
+        Arrays.fill(allowed, defaultAllowed);
+        for (Biome biome : Registry.BIOME) allowed[Registry.BIOME.getId(biome)] = false;
+
+        for (Biome biome : biomes)
+        {
+            int id = Registry.BIOME.getId(biome);
+            if (id >= 0) allowed[id] = true;
+        }
+
+        int[] ids = null;
+        BlockPos result = null;
+        int matches = 0;
+
+        for (int stripZ = -noiseRadius; stripZ <= noiseRadius; stripZ += stripDepth)
+        {
+            int depth = Math.min(stripDepth, noiseRadius - stripZ + 1);
+            ids = this.getNoiseBiomeIds(ids, centerX - noiseRadius, centerZ + stripZ, size, depth);
+
+            for (int i = 0; i < size * depth; ++i)
+            {
+                int id = ids[i];
+
+                if (id >= 0 && id <= maxId ? allowed[id] : defaultAllowed)
+                {
+                    if (result == null || random.nextInt(matches + 1) == 0)
+                    {
+                        result = new BlockPos((centerX - noiseRadius + i % size) << 2, y, (centerZ + stripZ + i / size) << 2);
+                    }
+
+                    ++matches;
+                }
+            }
+        }
+
+        return result;
+    }
+}
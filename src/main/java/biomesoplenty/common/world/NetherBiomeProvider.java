@@ -20,7 +20,6 @@ import net.minecraft.world.biome.provider.OverworldBiomeProvider;
 import net.minecraft.world.biome.provider.OverworldBiomeProviderSettings;
 import net.minecraft.world.gen.OverworldGenSettings;
 import net.minecraft.world.gen.feature.structure.Structure;
-import net.minecraft.world.gen.layer.Layer;
 import net.minecraft.world.gen.layer.LayerUtil;
 import net.minecraft.world.storage.WorldInfo;
 
@@ -31,19 +30,43 @@ import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class NetherBiomeProvider extends BiomeProvider
+public class NetherBiomeProvider extends BiomeProvider implements IBOPBiomeProvider
 {
-    private final Layer noiseBiomeLayer;
+    private final NoiseBiomeSource noiseBiomes;
 
     public NetherBiomeProvider(OverworldBiomeProviderSettings settingsProvider)
+    {
+        this(settingsProvider, null);
+    }
+
+    public NetherBiomeProvider(OverworldBiomeProviderSettings settingsProvider, @Nullable BiomeRegionStore regionStore)
     {
         super(BOPClimates.NETHER.getLandBiomes().stream().map(weightedBiomeEntry -> weightedBiomeEntry.biome).collect(Collectors.toSet()));
-        this.noiseBiomeLayer = BOPNetherLayerUtil.createGenLayers(settingsProvider.getSeed(), settingsProvider.getGeneratorType(), settingsProvider.getGeneratorSettings());
+        this.noiseBiomes = new NoiseBiomeSource(() -> BOPNetherLayerUtil.createGenLayers(settingsProvider.getSeed(), settingsProvider.getGeneratorType(), settingsProvider.getGeneratorSettings()), regionStore);
     }
 
     @Override
     public Biome getNoiseBiome(int x, int y, int z)
     {
-        return this.noiseBiomeLayer.get(x, z);
+        return this.noiseBiomes.getBiome(x, z);
+    }
+
+    @Override
+    public NoiseBiomeSource getNoiseBiomeSource()
+    {
+        return this.noiseBiomes;
+    }
+
+    @Override
+    public Set<Biome> getBiomesWithin(int x, int y, int z, int radius)
+    {
+        return this.noiseBiomes.getBiomesWithin(x, z, radius);
+    }
+
+    @Override
+    @Nullable
+    public BlockPos findBiomeHorizontal(int x, int y, int z, int radius, List<Biome> biomes, Random random)
+    {
+        return this.findNoiseBiomeHorizontal(x, y, z, radius, biomes, random);
     }
 }
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world;
+
+import biomesoplenty.common.world.layer.LayerBOP;
+import biomesoplenty.common.world.layer.LayerStackPool;
+import net.minecraft.world.biome.Biome;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/***
+ * The noise biomes of a BOP biome provider. Biomes are computed by a pool of layer stacks and served through
+ * the biome cache when it is enabled, whose tiles are read from the region store where possible.
+ */
+public class NoiseBiomeSource
+{
+    private final LayerStackPool layers;
+    @Nullable
+    private final BiomeTileCache biomeCache;
+    @Nullable
+    private final BiomeRegionStore regionStore;
+    private final BiomePresenceIndex presenceIndex;
+
+    public NoiseBiomeSource(Supplier<LayerBOP> layerFactory, @Nullable BiomeRegionStore regionStore)
+    {
+        this.layers = LayerStackPool.fromConfig(layerFactory);
+        this.biomeCache = BiomeTileCache.fromConfig();
+        this.regionStore = regionStore;
+        this.presenceIndex = new BiomePresenceIndex(this::getIds);
+    }
+
+    public Biome getBiome(int x, int z)
+    {
+        if (this.biomeCache != null)
+        {
+            return LayerBOP.getBiome(this.biomeCache.getId(x, z, this::loadTile));
+        }
+
+        return this.layers.get().get(x, z);
+    }
+
+    public int[] getIds(@Nullable int[] out, int x, int z, int width, int depth)
+    {
+        if (this.biomeCache != null)
+        {
+            return this.biomeCache.getIds(out, x, z, width, depth, this::loadTile);
+        }
+
+        return this.computeIds(out, x, z, width, depth);
+    }
+
+    public Biome[] getBiomes(@Nullable Biome[] out, int x, int z, int width, int depth)
+    {
+        if (this.biomeCache != null)
+        {
+            return LayerBOP.toBiomes(out, this.getIds(null, x, z, width, depth), width * depth);
+        }
+
+        return this.layers.get().getBiomes(out, x, z, width, depth);
+    }
+
+    // Bypasses the biome cache and region store
+    public int[] computeIds(@Nullable int[] out, int x, int z, int width, int depth)
+    {
+        return this.layers.get().getIds(out, x, z, width, depth);
+    }
+
+    // Equivalent to BiomeProvider.getBiomesWithin, in block coordinates
+    public Set<Biome> getBiomesWithin(int x, int z, int radius)
+    {
+        return this.presenceIndex.getBiomes(x - radius >> 2, z - radius >> 2, x + radius >> 2, z + radius >> 2);
+    }
+
+    // Fills a tile of the biome cache, preferring biomes stored in the world folder. Tiles are only stored by storeChunk
+    private int[] loadTile(int[] out, int x, int z, int width, int depth)
+    {
+        int tileX = x >> BiomeTileCache.TILE_BITS;
+        int tileZ = z >> BiomeTileCache.TILE_BITS;
+
+        if (this.regionStore != null && this.regionStore.read(tileX, tileZ, out))
+        {
+            return out;
+        }
+
+        return this.computeIds(out, x, z, width, depth);
+    }
+
+    @Nullable
+    public BiomeTileCache getBiomeCache()
+    {
+        return this.biomeCache;
+    }
+
+    @Nullable
+    public BiomeRegionStore getRegionStore()
+    {
+        return this.regionStore;
+    }
+
+    public BiomePresenceIndex getPresenceIndex()
+    {
+        return this.presenceIndex;
+    }
+}
@@ -1,5 +1,7 @@
 package biomesoplenty.common.world;
 
+import java.util.Random;
+
 /**
  * A speed-improved simplex noise algorithm for 2D in Java.
  *
@@ -17,13 +19,11 @@ package biomesoplenty.common.world;
  */
 public final class SimplexNoise {
 
-    private static Grad[] grad2 = {
-            new Grad(1, 1), new Grad(-1, 1), new Grad(1, -1), new Grad(-1, -1),
-            new Grad(1, 0), new Grad(-1, 0), new Grad(1, 0), new Grad(-1, 0),
-            new Grad(0, 1), new Grad(0, -1), new Grad(0, 1), new Grad(0, -1)
-    };
+    // Gradient components, indexed by the hashed corner
+    private static final double[] GRAD_X = {1, -1, 1, -1, 1, -1, 1, -1, 0, 0, 0, 0};
+    private static final double[] GRAD_Y = {1, 1, -1, -1, 0, 0, 0, 0, 1, -1, 1, -1};
 
-    private static short[] p = {151, 160, 137, 91, 90, 15, 131, 13, 201, 95, 96, 53, 194, 233, 7, 225, 140, 36, 103,
+    private static final short[] P = {151, 160, 137, 91, 90, 15, 131, 13, 201, 95, 96, 53, 194, 233, 7, 225, 140, 36, 103,
             30, 69, 142, 8, 99, 37, 240, 21, 10, 23,
             190, 6, 148, 247, 120, 234, 75, 0, 26, 197, 62, 94, 252, 219, 203, 117, 35, 11, 32, 57, 177, 33, 88, 237, 149, 56, 87, 174, 20, 125, 136, 171, 168,
             68, 175, 74, 165, 71, 134, 139, 48, 27, 166, 77, 146, 158, 231, 83, 111, 229, 122, 60, 211, 133, 230, 220, 105, 92, 41, 55, 46, 245, 40, 244, 102,
@@ -34,24 +34,51 @@ public final class SimplexNoise {
             199, 106, 157, 184, 84, 204, 176, 115, 121, 50, 45, 127, 4, 150, 254, 138, 236, 205, 93, 222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215,
             61, 156, 180};
 
-    // To remove the need for index wrapping, double the permutation table length
-    private static short[] perm = new short[512];
-    private static short[] permMod12 = new short[512];
-    static {
-        for (int i = 0; i < 512; i++) {
-            perm[i] = p[i & 255];
-            permMod12[i] = (short) (perm[i] % 12);
-        }
-    }
-
     // Skewing and unskewing factors for 2, 3, and 4 dimensions
     private static final double F2 = 0.5 * (Math.sqrt(3.0) - 1.0);
     private static final double G2 = (3.0 - Math.sqrt(3.0)) / 6.0;
 
+    // Uses the original permutation, which every existing caller depends on
+    private static final SimplexNoise DEFAULT = new SimplexNoise();
+
+    // To remove the need for index wrapping, double the permutation table length
+    private final int[] perm = new int[512];
+    private final int[] permMod12 = new int[512];
+
     /**
-     * Deactivate constructor
+     * Noise using the original fixed permutation, identical to the static noise method.
      */
-    private SimplexNoise() {
+    public SimplexNoise() {
+        int[] p = new int[256];
+        for (int i = 0; i < 256; i++) {
+            p[i] = P[i];
+        }
+        this.setPermutation(p);
+    }
+
+    /**
+     * Noise with the original permutation shuffled by seed, so each seed gives a different but repeatable field.
+     */
+    public SimplexNoise(long seed) {
+        int[] p = new int[256];
+        for (int i = 0; i < 256; i++) {
+            p[i] = P[i];
+        }
+        Random random = new Random(seed);
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = p[i];
+            p[i] = p[j];
+            p[j] = swap;
+        }
+        this.setPermutation(p);
+    }
+
+    private void setPermutation(int[] p) {
+        for (int i = 0; i < 512; i++) {
+            this.perm[i] = p[i & 255];
+            this.permMod12[i] = this.perm[i] % 12;
+        }
     }
 
     // This method is a *lot* faster than using (int)Math.floor(x)
@@ -60,12 +87,13 @@ public final class SimplexNoise {
         return x < xi ? xi - 1 : xi;
     }
 
-    private static double dot(Grad g, double x, double y) {
-        return g.x * x + g.y * y;
+    // 2D simplex noise
+    public static double noise(double xin, double yin) {
+        return DEFAULT.sample(xin, yin);
     }
 
     // 2D simplex noise
-    public static double noise(double xin, double yin) {
+    public double sample(double xin, double yin) {
 
         double n0, n1, n2; // Noise contributions from the three corners
         // Skew the input space to determine which simplex cell we're in
@@ -96,6 +124,8 @@ public final class SimplexNoise {
         double x2 = x0 - 1.0 + 2.0 * G2; // Offsets for last corner in (x,y) unskewed coords
         double y2 = y0 - 1.0 + 2.0 * G2;
         // Work out the hashed gradient indices of the three simplex corners
+        int[] perm = this.perm;
+        int[] permMod12 = this.permMod12;
         int ii = i & 255;
         int jj = j & 255;
         int gi0 = permMod12[ii + perm[jj]];
@@ -107,45 +137,57 @@ public final class SimplexNoise {
             n0 = 0.0;
         } else {
             t0 *= t0;
-            n0 = t0 * t0 * dot(grad2[gi0], x0, y0); // (x,y) of grad3 used for 2D gradient
+            n0 = t0 * t0 * (GRAD_X[gi0] * x0 + GRAD_Y[gi0] * y0); // (x,y) of grad3 used for 2D gradient
         }
         double t1 = 0.5 - x1 * x1 - y1 * y1;
         if (t1 < 0) {
             n1 = 0.0;
         } else {
             t1 *= t1;
-            n1 = t1 * t1 * dot(grad2[gi1], x1, y1);
+            n1 = t1 * t1 * (GRAD_X[gi1] * x1 + GRAD_Y[gi1] * y1);
         }
         double t2 = 0.5 - x2 * x2 - y2 * y2;
         if (t2 < 0) {
             n2 = 0.0;
         } else {
             t2 *= t2;
-            n2 = t2 * t2 * dot(grad2[gi2], x2, y2);
+            n2 = t2 * t2 * (GRAD_X[gi2] * x2 + GRAD_Y[gi2] * y2);
         }
         // Add contributions from each corner to get the final noise value.
         // The result is scaled to return values in the interval [-1,1].
         return 70.0 * (n0 + n1 + n2);
     }
 
-    // Inner class to speed up gradient computations
-    // (array access is a lot slower than member access)
-    private static class Grad {
-        double x, y;
-        Grad(double x, double y) {
-            this.x = x;
-            this.y = y;
+    /**
+     * Fills out with count samples along a row, at ((x + i) + xOffset) * scale, (z + zOffset) * scale.
+     * Coordinates are computed exactly as a caller sampling each integer position would.
+     */
+    public void fillRow(double[] out, int outOffset, int x, int z, int count, double xOffset, double zOffset, double scale) {
+        double yin = (z + zOffset) * scale;
+        for (int i = 0; i < count; i++) {
+            out[outOffset + i] = this.sample((x + i + xOffset) * scale, yin);
+        }
+    }
+
+    public void fillRow(float[] out, int outOffset, int x, int z, int count, double xOffset, double zOffset, double scale) {
+        double yin = (z + zOffset) * scale;
+        for (int i = 0; i < count; i++) {
+            out[outOffset + i] = (float) this.sample((x + i + xOffset) * scale, yin);
+        }
+    }
+
+    /**
+     * Fills out with a width by depth tile of samples starting at x, z, in row-major order.
+     */
+    public void fillTile(double[] out, int x, int z, int width, int depth, double xOffset, double zOffset, double scale) {
+        for (int dz = 0; dz < depth; dz++) {
+            this.fillRow(out, dz * width, x, z + dz, width, xOffset, zOffset, scale);
         }
     }
 
-    public static void main(String[] args)
-    {
-        double startX = 0.3543276545;
-        double startZ = 0.534523434;
-        double d = 0.11111;
-        for (int i = 0; i < 1000; i++)
-        {
-            System.out.println(SimplexNoise.noise(startX + d * i, startZ + d * i));
+    public void fillTile(float[] out, int x, int z, int width, int depth, double xOffset, double zOffset, double scale) {
+        for (int dz = 0; dz < depth; dz++) {
+            this.fillRow(out, dz * width, x, z + dz, width, xOffset, zOffset, scale);
         }
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,10 @@ import net.minecraft.world.gen.ChunkGenerator;
 import net.minecraft.world.gen.ChunkGeneratorType;
 import net.minecraft.world.gen.NetherGenSettings;
 import net.minecraft.world.gen.OverworldGenSettings;
+import net.minecraft.world.server.ServerWorld;
+
+import javax.annotation.Nullable;
+import java.io.File;
 
 public class WorldTypeBOP extends WorldType
 {
@@ -33,7 +37,7 @@ public class WorldTypeBOP extends WorldType
 	        OverworldBiomeProviderSettings biomeProviderSettings = new OverworldBiomeProviderSettings(world.getLevelData());
 	        biomeProviderSettings.setGeneratorSettings(genSettings);
 	
-	        return new ChunkGeneratorOverworldBOP(world, new BOPBiomeProvider(biomeProviderSettings), genSettings);
+	        return new ChunkGeneratorOverworldBOP(world, new BOPBiomeProvider(biomeProviderSettings, createRegionStore(world, biomeProviderSettings.getSeed(), genSettings)), genSettings);
     	}
 		else if (world.getDimension().getType() == DimensionType.NETHER)
 		{
@@ -44,11 +48,22 @@ public class WorldTypeBOP extends WorldType
 			// The nether shares biome provider settings with the overworld
 			OverworldBiomeProviderSettings biomeProviderSettings = new OverworldBiomeProviderSettings(world.getLevelData());
 
-			return ChunkGeneratorType.CAVES.create(world, new NetherBiomeProvider(biomeProviderSettings), nethergensettings);
+			return new ChunkGeneratorNetherBOP(world, new NetherBiomeProvider(biomeProviderSettings, createRegionStore(world, biomeProviderSettings.getSeed(), null)), nethergensettings);
 		}
     	else
     	{
     		return super.createChunkGenerator(world);
     	}
     }
+
+    // Only servers have a world folder to store biomes in
+    @Nullable
+    private static BiomeRegionStore createRegionStore(World world, long seed, @Nullable BOPOverworldGenSettings settings)
+    {
+        if (!(world instanceof ServerWorld))
+            return null;
+
+        File worldDirectory = ((ServerWorld)world).getLevelStorage().getFolder();
+        return BiomeRegionStore.fromConfig(world.getDimension().getType().getStorageFolder(worldDirectory), seed, settings);
+    }
 }
@@ -10,24 +10,22 @@ package biomesoplenty.common.world.layer;
 import biomesoplenty.api.biome.BOPBiomes;
 import biomesoplenty.api.enums.BOPClimates;
 import biomesoplenty.common.world.BOPLayerUtil;
-import biomesoplenty.common.world.layer.traits.IAreaTransformer3;
 import net.minecraft.util.registry.Registry;
 import net.minecraft.world.biome.Biomes;
 import net.minecraft.world.gen.INoiseRandom;
 import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.layer.traits.IAreaTransformer2;
 import net.minecraft.world.gen.layer.traits.IDimOffset0Transformer;
 
-public enum BOPMixOceansLayer implements IAreaTransformer3, IDimOffset0Transformer
+// Ocean temperatures are decided entirely by the climate, so unlike vanilla no ocean layer is mixed in
+public enum BOPMixOceansLayer implements IAreaTransformer2, IDimOffset0Transformer
 {
     INSTANCE;
 
     @Override
-    public int applyPixel(INoiseRandom context, IArea biomeArea, IArea oceanArea, IArea climateArea, int x, int z)
+    public int applyPixel(INoiseRandom context, IArea biomeArea, IArea climateArea, int x, int z)
     {
         int biomeId = biomeArea.get(x, z);
-        int oceanId = oceanArea.get(x, z);
-        int climateVal = climateArea.get(x, z);
-        BOPClimates climate = BOPClimates.lookup(climateVal);
 
         if (!BOPLayerUtil.isOcean(biomeId))
         {
@@ -35,6 +33,10 @@ public enum BOPMixOceansLayer implements IAreaTransformer3, IDimOffset0Transform
         }
         else
         {
+            // The climate is only needed for oceans
+            BOPClimates climate = BOPClimates.lookup(climateArea.get(x, z));
+            int oceanId;
+
         	switch (climate)
             {
                 case ICE_CAP:
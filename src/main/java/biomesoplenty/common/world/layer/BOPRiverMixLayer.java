@@ -7,10 +7,7 @@
  ******************************************************************************/
 package biomesoplenty.common.world.layer;
 
-import biomesoplenty.common.biome.BiomeBOP;
-import biomesoplenty.common.world.BOPLayerUtil;
 import net.minecraft.util.registry.Registry;
-import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.Biomes;
 import net.minecraft.world.gen.INoiseRandom;
 import net.minecraft.world.gen.area.IArea;
@@ -21,10 +18,6 @@ public enum BOPRiverMixLayer implements IAreaTransformer2, IDimOffset0Transforme
 {
     INSTANCE;
 
-    private static final int FROZEN_RIVER = Registry.BIOME.getId(Biomes.FROZEN_RIVER);
-    private static final int SNOWY_TUNDRA = Registry.BIOME.getId(Biomes.SNOWY_TUNDRA);
-    private static final int MUSHROOM_FIELDS = Registry.BIOME.getId(Biomes.MUSHROOM_FIELDS);
-    private static final int MUSHROOM_FIELD_SHORE = Registry.BIOME.getId(Biomes.MUSHROOM_FIELD_SHORE);
     private static final int RIVER = Registry.BIOME.getId(Biomes.RIVER);
 
     @Override
@@ -32,31 +25,15 @@ public enum BOPRiverMixLayer implements IAreaTransformer2, IDimOffset0Transforme
     {
         int biomeId = biomeArea.get(x, z);
         int riverId = riverArea.get(x, z);
-        Biome biome = Registry.BIOME.byId(biomeId);
+        BiomeTraits traits = BiomeTraits.of(context);
 
-        if (BOPLayerUtil.isOcean(biomeId))
+        if (traits.isOcean(biomeId))
         {
             return biomeId;
         }
         else if (riverId == RIVER)
         {
-            if (biomeId == SNOWY_TUNDRA)
-            {
-                return FROZEN_RIVER;
-            }
-            else if (biome instanceof BiomeBOP)
-            {
-                BiomeBOP biomeBOP = (BiomeBOP)biome;
-
-                if (biomeBOP.riverBiomeId != -1)
-                    return biomeBOP.riverBiomeId;
-                else
-                    return biomeId;
-            }
-            else
-            {
-                return biomeId != MUSHROOM_FIELDS && biomeId != MUSHROOM_FIELD_SHORE ? riverId & 255 : MUSHROOM_FIELD_SHORE;
-            }
+            return traits.getRiverId(biomeId);
         }
         else
         {
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.api.biome.BOPBiomes;
+import biomesoplenty.core.BiomesOPlenty;
+import biomesoplenty.init.ModConfig;
+import com.google.common.collect.Lists;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.Biomes;
+import net.minecraft.world.gen.layer.LayerUtil;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/***
+ * The rules applied by BOPBiomeEdgeLayer, compiled into tables indexed by biome id. Each centre biome
+ * maps to the rules which can apply to it, in the order they were added, with membership tests done
+ * against bitsets of biome ids.
+ */
+public class BiomeEdgeRules
+{
+    private static final int DESERT = Registry.BIOME.getId(Biomes.DESERT);
+    private static final int MOUNTAINS = Registry.BIOME.getId(Biomes.MOUNTAINS);
+    private static final int WOODED_MOUNTAINS = Registry.BIOME.getId(Biomes.WOODED_MOUNTAINS);
+    private static final int SNOWY_TUNDRA = Registry.BIOME.getId(Biomes.SNOWY_TUNDRA);
+    private static final int JUNGLE = Registry.BIOME.getId(Biomes.JUNGLE);
+    private static final int JUNGLE_HILLS = Registry.BIOME.getId(Biomes.JUNGLE_HILLS);
+    private static final int JUNGLE_EDGE = Registry.BIOME.getId(Biomes.JUNGLE_EDGE);
+    private static final int BADLANDS = Registry.BIOME.getId(Biomes.BADLANDS);
+    private static final int BADLANDS_PLATEAU = Registry.BIOME.getId(Biomes.BADLANDS_PLATEAU);
+    private static final int WOODED_BADLANDS_PLATEAU = Registry.BIOME.getId(Biomes.WOODED_BADLANDS_PLATEAU);
+    private static final int PLAINS = Registry.BIOME.getId(Biomes.PLAINS);
+    private static final int GIANT_TREE_TAIGA = Registry.BIOME.getId(Biomes.GIANT_TREE_TAIGA);
+    private static final int MOUNTAIN_EDGE = Registry.BIOME.getId(Biomes.MOUNTAIN_EDGE);
+    private static final int SWAMP = Registry.BIOME.getId(Biomes.SWAMP);
+    private static final int TAIGA = Registry.BIOME.getId(Biomes.TAIGA);
+    private static final int SNOWY_TAIGA = Registry.BIOME.getId(Biomes.SNOWY_TAIGA);
+
+    private final int size;
+    private final List<Rule> rules = Lists.newArrayList();
+    // The rules to try for each centre biome, or null if none apply
+    private Rule[][] rulesByCenter;
+
+    public BiomeEdgeRules()
+    {
+        int size = 0;
+
+        for (Biome biome : Registry.BIOME)
+        {
+            size = Math.max(size, Registry.BIOME.getId(biome) + 1);
+        }
+
+        this.size = size;
+    }
+
+    /***
+     * The built in rules followed by those from the config. Built in rules take priority.
+     */
+    public static BiomeEdgeRules fromConfig()
+    {
+        BiomeEdgeRules edgeRules = createDefault();
+
+        for (String entry : ModConfig.GenerationConfig.extraEdgeRules.get())
+        {
+            edgeRules.parse(entry);
+        }
+
+        return edgeRules.compile();
+    }
+
+    public static BiomeEdgeRules createDefault()
+    {
+        BiomeEdgeRules edgeRules = new BiomeEdgeRules();
+
+        // line BOP alps peaks with BOP alps foothills
+        edgeRules.addEdge(BOPBiomes.alps, BOPBiomes.alps_foothills);
+
+        // line BOP redwood forest with BOP redwood forest edge
+        edgeRules.addEdge(BOPBiomes.redwood_forest, BOPBiomes.redwood_forest_edge);
+
+        // line BOP volcano with BOP volcano edge
+        edgeRules.addEdge(BOPBiomes.volcano, BOPBiomes.volcano_edge);
+
+        // line mountains with mountain edges
+        edgeRules.addTemperatureEdge(MOUNTAINS, MOUNTAIN_EDGE);
+
+        // line special badlands with badlands
+        edgeRules.addEdge(WOODED_BADLANDS_PLATEAU, BADLANDS);
+        edgeRules.addEdge(BADLANDS_PLATEAU, BADLANDS);
+
+        // line the giant tree taiga with taiga
+        edgeRules.addEdge(GIANT_TREE_TAIGA, TAIGA);
+
+        edgeRules.addContact(DESERT, WOODED_MOUNTAINS, SNOWY_TUNDRA);
+        edgeRules.addContact(SWAMP, PLAINS, DESERT, SNOWY_TAIGA, SNOWY_TUNDRA);
+        edgeRules.addContact(SWAMP, JUNGLE_EDGE, JUNGLE, JUNGLE_HILLS);
+        return edgeRules.compile();
+    }
+
+    public int apply(int northBiomeId, int eastBiomeId, int southBiomeId, int westBiomeId, int biomeId)
+    {
+        if (biomeId < 0 || biomeId >= this.size)
+            return biomeId;
+
+        Rule[] centerRules = this.rulesByCenter[biomeId];
+
+        if (centerRules == null)
+            return biomeId;
+
+        for (Rule rule : centerRules)
+        {
+            boolean north = rule.matches(northBiomeId);
+            boolean east = rule.matches(eastBiomeId);
+            boolean south = rule.matches(southBiomeId);
+            boolean west = rule.matches(westBiomeId);
+
+            if (rule.contact)
+            {
+                if (north || east || south || west)
+                    return rule.replacementId;
+            }
+            else
+            {
+                // Edge rules always decide the result for their centre biome
+                return north && east && south && west ? biomeId : rule.replacementId;
+            }
+        }
+
+        return biomeId;
+    }
+
+    /***
+     * Replaces biomeId with edgeId wherever it isn't surrounded by the same biome.
+     */
+    public BiomeEdgeRules addEdge(int biomeId, int edgeId)
+    {
+        Rule rule = new Rule(edgeId, false);
+
+        for (int id = 0; id < this.size; ++id)
+        {
+            if (LayerUtil.isSame(id, biomeId)) rule.set(id);
+        }
+
+        rule.centerIds = new int[] { biomeId };
+        this.rules.add(rule);
+        return this;
+    }
+
+    public BiomeEdgeRules addEdge(Optional<Biome> biome, Optional<Biome> edge)
+    {
+        if (biome.isPresent() && edge.isPresent())
+        {
+            this.addEdge(Registry.BIOME.getId(biome.get()), Registry.BIOME.getId(edge.get()));
+        }
+
+        return this;
+    }
+
+    /***
+     * Replaces anything similar to biomeId with edgeId wherever it borders a biome of an incompatible temperature.
+     */
+    public BiomeEdgeRules addTemperatureEdge(int biomeId, int edgeId)
+    {
+        Rule rule = new Rule(edgeId, false);
+        Biome biome = Registry.BIOME.byId(biomeId);
+        List<Integer> centerIds = Lists.newArrayList();
+
+        for (int id = 0; id < this.size; ++id)
+        {
+            if (LayerUtil.isSame(id, biomeId))
+            {
+                rule.set(id);
+                centerIds.add(id);
+            }
+            else
+            {
+                Biome neighbour = Registry.BIOME.byId(id);
+
+                if (biome != null && neighbour != null)
+                {
+                    Biome.TempCategory category = biome.getTemperatureCategory();
+                    Biome.TempCategory neighbourCategory = neighbour.getTemperatureCategory();
+
+                    if (neighbourCategory == category || neighbourCategory == Biome.TempCategory.MEDIUM || category == Biome.TempCategory.MEDIUM)
+                    {
+                        rule.set(id);
+                    }
+                }
+            }
+        }
+
+        rule.centerIds = centerIds.stream().mapToInt(Integer::intValue).toArray();
+        this.rules.add(rule);
+        return this;
+    }
+
+    /***
+     * Replaces biomeId with replacementId wherever it touches any of neighbourIds.
+     */
+    public BiomeEdgeRules addContact(int biomeId, int replacementId, int... neighbourIds)
+    {
+        Rule rule = new Rule(replacementId, true);
+
+        for (int id : neighbourIds)
+        {
+            if (id >= 0 && id < this.size) rule.set(id);
+        }
+
+        rule.centerIds = new int[] { biomeId };
+        this.rules.add(rule);
+        return this;
+    }
+
+    public BiomeEdgeRules compile()
+    {
+        Rule[][] rulesByCenter = new Rule[this.size][];
+
+        for (Rule rule : this.rules)
+        {
+            for (int centerId : rule.centerIds)
+            {
+                if (centerId < 0 || centerId >= this.size)
+                    continue;
+
+                Rule[] existing = rulesByCenter[centerId];
+
+                if (existing == null)
+                {
+                    rulesByCenter[centerId] = new Rule[] { rule };
+                }
+                // Anything after an edge rule can never be reached
+                else if (existing[existing.length - 1].contact)
+                {
+                    existing = Arrays.copyOf(existing, existing.length + 1);
+                    existing[existing.length - 1] = rule;
+                    rulesByCenter[centerId] = existing;
+                }
+            }
+        }
+
+        this.rulesByCenter = rulesByCenter;
+        return this;
+    }
+
+    // Entries are either biome=edge or biome=replacement near neighbour[,neighbour...]
+    private void parse(String entry)
+    {
+        String[] parts = entry.split("=");
+
+        if (parts.length != 2)
+        {
+            BiomesOPlenty.logger.warn("Ignoring malformed edge rule " + entry + ", expected biome=edge or biome=replacement near neighbour[,neighbour...]");
+            return;
+        }
+
+        String[] replacement = parts[1].trim().split("\\s+near\\s+");
+        int biomeId = getBiomeId(parts[0], entry);
+        int replacementId = getBiomeId(replacement[0], entry);
+
+        if (biomeId == -1 || replacementId == -1)
+            return;
+
+        if (replacement.length == 1)
+        {
+            this.addEdge(biomeId, replacementId);
+            return;
+        }
+
+        String[] neighbours = replacement[1].split(",");
+        int[] neighbourIds = new int[neighbours.length];
+
+        for (int i = 0; i < neighbours.length; ++i)
+        {
+            neighbourIds[i] = getBiomeId(neighbours[i], entry);
+            if (neighbourIds[i] == -1) return;
+        }
+
+        this.addContact(biomeId, replacementId, neighbourIds);
+    }
+
+    private static int getBiomeId(String name, String entry)
+    {
+        ResourceLocation location = ResourceLocation.tryParse(name.trim());
+        Optional<Biome> biome = location == null ? Optional.empty() : Registry.BIOME.getOptional(location);
+
+        if (!biome.isPresent())
+        {
+            BiomesOPlenty.logger.warn("Ignoring edge rule " + entry + ", unknown biome " + name.trim());
+            return -1;
+        }
+
+        return Registry.BIOME.getId(biome.get());
+    }
+
+    private static class Rule
+    {
+        private final int replacementId;
+        private final boolean contact;
+        private int[] centerIds;
+        private long[] matchingIds = new long[0];
+
+        private Rule(int replacementId, boolean contact)
+        {
+            this.replacementId = replacementId;
+            this.contact = contact;
+        }
+
+        private void set(int biomeId)
+        {
+            int word = biomeId >>> 6;
+            if (word >= this.matchingIds.length) this.matchingIds = Arrays.copyOf(this.matchingIds, word + 1);
+            this.matchingIds[word] |= 1L << biomeId;
+        }
+
+        private boolean matches(int biomeId)
+        {
+            int word = biomeId >>> 6;
+            return word < this.matchingIds.length && (this.matchingIds[word] & (1L << biomeId)) != 0;
+        }
+    }
+}
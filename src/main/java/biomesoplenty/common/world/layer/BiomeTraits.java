@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.api.biome.BOPBiomes;
+import biomesoplenty.common.biome.BiomeBOP;
+import biomesoplenty.common.world.BOPLayerUtil;
+import biomesoplenty.common.world.layer.traits.IBOPContextExtended;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.Biomes;
+import net.minecraft.world.gen.INoiseRandom;
+
+import java.util.Optional;
+
+/***
+ * Properties of every biome id used by the high resolution layers, so they can be read from arrays
+ * rather than worked out from the registry for every pixel and neighbour. Built once per layer stack.
+ */
+public class BiomeTraits
+{
+    public static final int NONE = -1;
+
+    private static final int OCEAN = 1;
+    private static final int SHALLOW_OCEAN = 1 << 1;
+    private static final int JUNGLE = 1 << 2;
+    private static final int JUNGLE_COMPATIBLE = 1 << 3;
+    private static final int MESA = 1 << 4;
+    private static final int SNOWY = 1 << 5;
+
+    private static final int BEACH = Registry.BIOME.getId(Biomes.BEACH);
+    private static final int SNOWY_BEACH = Registry.BIOME.getId(Biomes.SNOWY_BEACH);
+    private static final int RIVER = Registry.BIOME.getId(Biomes.RIVER);
+    private static final int FROZEN_RIVER = Registry.BIOME.getId(Biomes.FROZEN_RIVER);
+    private static final int SNOWY_TUNDRA = Registry.BIOME.getId(Biomes.SNOWY_TUNDRA);
+    private static final int MUSHROOM_FIELDS = Registry.BIOME.getId(Biomes.MUSHROOM_FIELDS);
+    private static final int MUSHROOM_FIELD_SHORE = Registry.BIOME.getId(Biomes.MUSHROOM_FIELD_SHORE);
+
+    private static volatile BiomeTraits shared;
+
+    private final int[] flags;
+    private final int[] tempCategories;
+    private final int[] beachIds;
+    private final int[] snowyBeachIds;
+    private final int[] riverIds;
+    private final int mangroveId;
+
+    public BiomeTraits()
+    {
+        int size = 0;
+
+        for (Biome biome : Registry.BIOME)
+        {
+            size = Math.max(size, Registry.BIOME.getId(biome) + 1);
+        }
+
+        this.flags = new int[size];
+        this.tempCategories = new int[size];
+        this.beachIds = new int[size];
+        this.snowyBeachIds = new int[size];
+        this.riverIds = new int[size];
+        this.mangroveId = getIdIfPresent(BOPBiomes.mangrove, NONE);
+
+        for (int id = 0; id < size; ++id)
+        {
+            Biome biome = Registry.BIOME.byId(id);
+            int flags = 0;
+
+            if (BOPLayerUtil.isOcean(id)) flags |= OCEAN;
+            if (BOPLayerUtil.isShallowOcean(id)) flags |= SHALLOW_OCEAN;
+            if (biome != null && biome.getBiomeCategory() == Biome.Category.JUNGLE) flags |= JUNGLE;
+            if (isJungleCompatible(biome, id)) flags |= JUNGLE_COMPATIBLE;
+            if (isMesa(biome)) flags |= MESA;
+            if (biome != null && biome.getPrecipitation() == Biome.RainType.SNOW) flags |= SNOWY;
+
+            this.flags[id] = flags;
+            this.tempCategories[id] = biome == null ? NONE : biome.getTemperatureCategory().ordinal();
+            this.beachIds[id] = getBeachId(biome, id);
+            this.snowyBeachIds[id] = biome instanceof BiomeBOP && ((BiomeBOP)biome).beachBiomeId == -1 ? id : SNOWY_BEACH;
+            this.riverIds[id] = getRiverId(biome, id);
+        }
+    }
+
+    /***
+     * Returns the traits belonging to the stack a context is part of.
+     */
+    public static BiomeTraits of(INoiseRandom context)
+    {
+        if (context instanceof IBOPContextExtended)
+        {
+            return ((IBOPContextExtended<?>)context).getBiomeTraits();
+        }
+
+        BiomeTraits traits = shared;
+
+        if (traits == null)
+        {
+            traits = shared = new BiomeTraits();
+        }
+
+        return traits;
+    }
+
+    private int flags(int biomeId)
+    {
+        return biomeId >= 0 && biomeId < this.flags.length ? this.flags[biomeId] : 0;
+    }
+
+    public boolean isOcean(int biomeId)
+    {
+        return (this.flags(biomeId) & OCEAN) != 0;
+    }
+
+    public boolean isShallowOcean(int biomeId)
+    {
+        return (this.flags(biomeId) & SHALLOW_OCEAN) != 0;
+    }
+
+    public boolean isJungle(int biomeId)
+    {
+        return (this.flags(biomeId) & JUNGLE) != 0;
+    }
+
+    public boolean isJungleCompatible(int biomeId)
+    {
+        return (this.flags(biomeId) & JUNGLE_COMPATIBLE) != 0;
+    }
+
+    public boolean isMesa(int biomeId)
+    {
+        return (this.flags(biomeId) & MESA) != 0;
+    }
+
+    public boolean isSnowy(int biomeId)
+    {
+        return (this.flags(biomeId) & SNOWY) != 0;
+    }
+
+    // The ordinal of the biome's temperature category, or NONE if it isn't registered
+    public int getTempCategory(int biomeId)
+    {
+        return biomeId >= 0 && biomeId < this.tempCategories.length ? this.tempCategories[biomeId] : NONE;
+    }
+
+    // The biome to use when a non-snowy biome borders the ocean
+    public int getBeachId(int biomeId)
+    {
+        return biomeId >= 0 && biomeId < this.beachIds.length ? this.beachIds[biomeId] : BEACH;
+    }
+
+    // The biome to use when a snowy biome borders the ocean
+    public int getSnowyBeachId(int biomeId)
+    {
+        return biomeId >= 0 && biomeId < this.snowyBeachIds.length ? this.snowyBeachIds[biomeId] : SNOWY_BEACH;
+    }
+
+    // The biome to use where a river crosses this biome
+    public int getRiverId(int biomeId)
+    {
+        return biomeId >= 0 && biomeId < this.riverIds.length ? this.riverIds[biomeId] : RIVER & 255;
+    }
+
+    public int getMangroveId(int fallbackId)
+    {
+        return this.mangroveId != NONE ? this.mangroveId : fallbackId;
+    }
+
+    private static boolean isJungleCompatible(Biome biome, int biomeId)
+    {
+        if (biome != null && biome.getBiomeCategory() == Biome.Category.JUNGLE)
+        {
+            return true;
+        }
+
+        return biome == Biomes.JUNGLE_EDGE || biome == Biomes.JUNGLE || biome == Biomes.JUNGLE_HILLS || biome == Biomes.FOREST || biome == Biomes.TAIGA || BOPLayerUtil.isOcean(biomeId);
+    }
+
+    private static boolean isMesa(Biome biome)
+    {
+        return biome == Biomes.BADLANDS || biome == Biomes.WOODED_BADLANDS_PLATEAU || biome == Biomes.BADLANDS_PLATEAU || biome == Biomes.ERODED_BADLANDS || biome == Biomes.MODIFIED_WOODED_BADLANDS_PLATEAU || biome == Biomes.MODIFIED_BADLANDS_PLATEAU;
+    }
+
+    private static int getBeachId(Biome biome, int biomeId)
+    {
+        if (biome instanceof BiomeBOP)
+        {
+            BiomeBOP biomeBOP = (BiomeBOP)biome;
+            return biomeBOP.beachBiomeId != -1 ? biomeBOP.beachBiomeId : biomeId;
+        }
+
+        if (biome == Biomes.JUNGLE || biome == Biomes.JUNGLE_HILLS || biome == Biomes.JUNGLE_EDGE || biome == Biomes.MODIFIED_JUNGLE || biome == Biomes.BAMBOO_JUNGLE || biome == Biomes.BAMBOO_JUNGLE_HILLS || biome == Biomes.MODIFIED_JUNGLE_EDGE)
+        {
+            return getIdIfPresent(BOPBiomes.mangrove, biomeId);
+        }
+
+        if (biome == Biomes.TAIGA || biome == Biomes.TAIGA_MOUNTAINS || biome == Biomes.TAIGA_HILLS || biome == Biomes.GIANT_TREE_TAIGA || biome == Biomes.GIANT_SPRUCE_TAIGA || biome == Biomes.GIANT_TREE_TAIGA_HILLS || biome == Biomes.GIANT_SPRUCE_TAIGA_HILLS || biome == Biomes.BIRCH_FOREST_HILLS || biome == Biomes.BIRCH_FOREST || biome == Biomes.TALL_BIRCH_HILLS || biome == Biomes.TALL_BIRCH_FOREST || biome == Biomes.DARK_FOREST_HILLS || biome == Biomes.DARK_FOREST)
+        {
+            return getIdIfPresent(BOPBiomes.gravel_beach, biomeId);
+        }
+
+        return BEACH;
+    }
+
+    private static int getRiverId(Biome biome, int biomeId)
+    {
+        if (biomeId == SNOWY_TUNDRA)
+        {
+            return FROZEN_RIVER;
+        }
+        else if (biome instanceof BiomeBOP)
+        {
+            BiomeBOP biomeBOP = (BiomeBOP)biome;
+            return biomeBOP.riverBiomeId != -1 ? biomeBOP.riverBiomeId : biomeId;
+        }
+        else
+        {
+            return biomeId != MUSHROOM_FIELDS && biomeId != MUSHROOM_FIELD_SHORE ? RIVER & 255 : MUSHROOM_FIELD_SHORE;
+        }
+    }
+
+    private static int getIdIfPresent(Optional<Biome> biome, int fallbackId)
+    {
+        return biome.isPresent() ? Registry.BIOME.getId(biome.get()) : fallbackId;
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.api.enums.BOPClimates;
+import biomesoplenty.common.world.layer.traits.IBOPAreaTransformer0;
+import biomesoplenty.common.world.layer.traits.IBOPLayerRandom;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.gen.ImprovedNoiseGenerator;
+import net.minecraft.world.gen.LazyAreaLayerContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * Temperature, rainfall and climate values for a world seed, stored a byte per cell in square tiles.
+ * Tiles are filled a whole region at a time and can be read from any thread without locking. Every
+ * layer stack built for the same seed and climate settings shares one cache. The cache has its own
+ * contexts rather than ones from a stack, so it never keeps a stack's caches alive.
+ */
+public class ClimateFieldCache
+{
+    private static final int TILE_BITS = 6;
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    // Must be a power of two
+    private static final int SLOT_COUNT = 256;
+    private static final int MAX_SHARED = 4;
+
+    private static final Map<Key, ClimateFieldCache> SHARED = new LinkedHashMap<Key, ClimateFieldCache>(16, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ClimateFieldCache> eldest)
+        {
+            return this.size() > MAX_SHARED;
+        }
+    };
+
+    private final int[] climateMapping = BOPClimates.getClimateMappingInts();
+
+    private final IBOPAreaTransformer0 temperatureLayer;
+    private final ClimateContext temperatureContext;
+    private final IBOPAreaTransformer0 rainfallLayer;
+    private final ClimateContext rainfallContext;
+
+    // Tiles are direct mapped by position. A slot holding another tile is simply refilled
+    private final AtomicReferenceArray<Tile> slots = new AtomicReferenceArray<>(SLOT_COUNT);
+    private final int[] temperatureBuffer = new int[TILE_SIZE * TILE_SIZE];
+    private final int[] rainfallBuffer = new int[TILE_SIZE * TILE_SIZE];
+
+    /***
+     * The seed modifiers are those the layers would otherwise be run with in a stack.
+     */
+    public ClimateFieldCache(long seed, IBOPAreaTransformer0 temperatureLayer, long temperatureSeed, IBOPAreaTransformer0 rainfallLayer, long rainfallSeed)
+    {
+        this.temperatureLayer = temperatureLayer;
+        this.temperatureContext = new ClimateContext(seed, temperatureSeed);
+        this.rainfallLayer = rainfallLayer;
+        this.rainfallContext = new ClimateContext(seed, rainfallSeed);
+    }
+
+    /***
+     * Returns the cache for the given seed and climate layers, creating it if necessary.
+     */
+    public static ClimateFieldCache getShared(long seed, IBOPAreaTransformer0 temperatureLayer, long temperatureSeed, IBOPAreaTransformer0 rainfallLayer, long rainfallSeed)
+    {
+        Key key = new Key(seed, temperatureLayer, rainfallLayer);
+
+        synchronized (SHARED)
+        {
+            return SHARED.computeIfAbsent(key, (k) -> new ClimateFieldCache(seed, temperatureLayer, temperatureSeed, rainfallLayer, rainfallSeed));
+        }
+    }
+
+    // Temperatures are between 0 (cold) and 8 (hot)
+    public int getTemperature(int x, int z)
+    {
+        return this.getTile(x, z).temperatures[index(x, z)];
+    }
+
+    // Rainfall is between 0 (wet) and 11 (dry)
+    public int getRainfall(int x, int z)
+    {
+        return this.getTile(x, z).rainfall[index(x, z)];
+    }
+
+    // The ordinal of the BOPClimates value at a position
+    public int getClimate(int x, int z)
+    {
+        return this.getTile(x, z).climates[index(x, z)];
+    }
+
+    /***
+     * Fills out with the climate ordinals of a width by depth region starting at x, z, in row-major order.
+     */
+    public void getClimates(int[] out, int x, int z, int width, int depth)
+    {
+        for (int tileZ = z & ~TILE_MASK; tileZ < z + depth; tileZ += TILE_SIZE)
+        {
+            for (int tileX = x & ~TILE_MASK; tileX < x + width; tileX += TILE_SIZE)
+            {
+                Tile tile = this.getTile(tileX, tileZ);
+                int minX = Math.max(x, tileX);
+                int minZ = Math.max(z, tileZ);
+                int maxX = Math.min(x + width, tileX + TILE_SIZE);
+                int maxZ = Math.min(z + depth, tileZ + TILE_SIZE);
+
+                for (int posZ = minZ; posZ < maxZ; ++posZ)
+                {
+                    int in = index(minX, posZ);
+                    int outIndex = (minX - x) + (posZ - z) * width;
+
+                    for (int posX = minX; posX < maxX; ++posX)
+                    {
+                        out[outIndex++] = tile.climates[in++];
+                    }
+                }
+            }
+        }
+    }
+
+    private Tile getTile(int x, int z)
+    {
+        int tileX = x >> TILE_BITS;
+        int tileZ = z >> TILE_BITS;
+        int slot = (tileX * 31 + tileZ) & (SLOT_COUNT - 1);
+        Tile tile = this.slots.get(slot);
+
+        if (tile != null && tile.tileX == tileX && tile.tileZ == tileZ)
+        {
+            return tile;
+        }
+
+        tile = this.fill(tileX, tileZ);
+        this.slots.set(slot, tile);
+        return tile;
+    }
+
+    private synchronized Tile fill(int tileX, int tileZ)
+    {
+        int x = tileX << TILE_BITS;
+        int z = tileZ << TILE_BITS;
+        Tile tile = new Tile(tileX, tileZ);
+
+        this.temperatureLayer.applyRegion(this.temperatureContext, this.temperatureBuffer, x, z, TILE_SIZE, TILE_SIZE);
+        this.rainfallLayer.applyRegion(this.rainfallContext, this.rainfallBuffer, x, z, TILE_SIZE, TILE_SIZE);
+
+        for (int i = 0; i < TILE_SIZE * TILE_SIZE; ++i)
+        {
+            // clamp as a precaution against potential rounding errors due to use of doubles/floats in noise calculations
+            int temperature = MathHelper.clamp(this.temperatureBuffer[i], 0, 8);
+            int rainfall = MathHelper.clamp(this.rainfallBuffer[i], 0, 11);
+
+            tile.temperatures[i] = (byte)temperature;
+            tile.rainfall[i] = (byte)rainfall;
+            tile.climates[i] = (byte)this.climateMapping[(temperature * 12) + rainfall];
+        }
+
+        return tile;
+    }
+
+    private static int index(int x, int z)
+    {
+        return (x & TILE_MASK) + ((z & TILE_MASK) << TILE_BITS);
+    }
+
+    // Never modified once published
+    private static class Tile
+    {
+        private final int tileX;
+        private final int tileZ;
+        private final byte[] temperatures = new byte[TILE_SIZE * TILE_SIZE];
+        private final byte[] rainfall = new byte[TILE_SIZE * TILE_SIZE];
+        private final byte[] climates = new byte[TILE_SIZE * TILE_SIZE];
+
+        private Tile(int tileX, int tileZ)
+        {
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+        }
+    }
+
+    // Random values and the seed for the climate layers, seeded as a stack's context would be
+    private static class ClimateContext implements IBOPLayerRandom
+    {
+        private final long worldSeed;
+        private final LazyAreaLayerContext random;
+
+        private ClimateContext(long seed, long seedModifier)
+        {
+            this.worldSeed = seed;
+            this.random = new LazyAreaLayerContext(0, seed, seedModifier);
+        }
+
+        @Override
+        public void initRandom(long x, long z)
+        {
+            this.random.initRandom(x, z);
+        }
+
+        @Override
+        public int nextRandom(int bound)
+        {
+            return this.random.nextRandom(bound);
+        }
+
+        @Override
+        public ImprovedNoiseGenerator getBiomeNoise()
+        {
+            return this.random.getBiomeNoise();
+        }
+
+        @Override
+        public long getWorldSeed()
+        {
+            return this.worldSeed;
+        }
+    }
+
+    private static class Key
+    {
+        private final long seed;
+        private final IBOPAreaTransformer0 temperatureLayer;
+        private final IBOPAreaTransformer0 rainfallLayer;
+
+        private Key(long seed, IBOPAreaTransformer0 temperatureLayer, IBOPAreaTransformer0 rainfallLayer)
+        {
+            this.seed = seed;
+            this.temperatureLayer = temperatureLayer;
+            this.rainfallLayer = rainfallLayer;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return this.seed == other.seed && this.temperatureLayer == other.temperatureLayer && this.rainfallLayer == other.rainfallLayer;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.seed, this.temperatureLayer, this.rainfallLayer);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.common.world.layer.traits.IBOPAreaTransformer0;
+import biomesoplenty.common.world.layer.traits.IBOPLayerRandom;
+
+/***
+ * Reads climates from a ClimateFieldCache. Produces the same values as ClimateLayer applied to
+ * the temperature and rainfall layers the cache was created with.
+ */
+public class ClimateFieldLayer implements IBOPAreaTransformer0
+{
+    private final ClimateFieldCache cache;
+
+    public ClimateFieldLayer(ClimateFieldCache cache)
+    {
+        this.cache = cache;
+    }
+
+    @Override
+    public int applyPixel(IBOPLayerRandom context, int x, int z)
+    {
+        return this.cache.getClimate(x, z);
+    }
+
+    @Override
+    public void applyRegion(IBOPLayerRandom context, int[] out, int x, int z, int width, int depth)
+    {
+        this.cache.getClimates(out, x, z, width, depth);
+    }
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.common.world.layer.traits.IRegionTransformer;
+import net.minecraft.world.gen.IExtendedNoiseRandom;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.area.IAreaFactory;
+import net.minecraft.world.gen.layer.ZoomLayer;
+
+/***
+ * Several consecutive levels of a zoom layer evaluated as a single layer. A region is computed by
+ * working out the area each level must cover, reading the parent once for the lowest level and then
+ * zooming level by level between two buffers.
+ *
+ * Every pixel of every level goes through the vanilla zoom with its own context, exactly as the chained
+ * layers would, so both the normal and fuzzy zooms give identical results.
+ */
+public class FusedZoomLayer
+{
+    private final ZoomLayer zoom;
+    // One context per level, from the lowest level upwards
+    private final IExtendedNoiseRandom<?>[] contexts;
+
+    public FusedZoomLayer(ZoomLayer zoom, IExtendedNoiseRandom<?>... contexts)
+    {
+        if (contexts.length == 0) throw new IllegalArgumentException("A fused zoom needs at least one level");
+
+        this.zoom = zoom;
+        this.contexts = contexts;
+    }
+
+    public <R extends IArea> IAreaFactory<R> run(IExtendedNoiseRandom<R> context, IAreaFactory<R> factory)
+    {
+        return () ->
+        {
+            R parent = factory.make();
+            Buffer[] scratch = this.createScratch();
+            return context.createResult(new IRegionTransformer()
+            {
+                @Override
+                public int apply(int x, int z)
+                {
+                    return FusedZoomLayer.this.applyPixel(parent, scratch, x, z);
+                }
+
+                @Override
+                public void applyRegion(int[] out, int x, int z, int width, int depth)
+                {
+                    FusedZoomLayer.this.applyRegion(parent, out, x, z, width, depth);
+                }
+            }, parent);
+        };
+    }
+
+    public int getLevels()
+    {
+        return this.contexts.length;
+    }
+
+    // A buffer for every level below the top. Single positions never need more than 2x2 pixels of any level
+    private Buffer[] createScratch()
+    {
+        Buffer[] scratch = new Buffer[this.contexts.length];
+
+        for (int level = 0; level < scratch.length; ++level)
+        {
+            scratch[level] = new Buffer(0, 0, 2, 2);
+        }
+
+        return scratch;
+    }
+
+    // Equivalent to applyRegion for a single position, without allocating
+    private int applyPixel(IArea parent, Buffer[] scratch, int x, int z)
+    {
+        int levels = this.contexts.length;
+        int minX = x;
+        int minZ = z;
+        int maxX = x;
+        int maxZ = z;
+
+        for (int level = levels - 1; level >= 0; --level)
+        {
+            minX >>= 1;
+            minZ >>= 1;
+            maxX = (maxX + 1) >> 1;
+            maxZ = (maxZ + 1) >> 1;
+            scratch[level].moveTo(minX, minZ, maxX - minX + 1, maxZ - minZ + 1);
+        }
+
+        Buffer below = scratch[0];
+        int i = 0;
+
+        for (int posZ = below.minZ; posZ < below.minZ + below.depth; ++posZ)
+        {
+            for (int posX = below.minX; posX < below.minX + below.width; ++posX)
+            {
+                below.data[i++] = parent.get(posX, posZ);
+            }
+        }
+
+        for (int level = 1; level < levels; ++level)
+        {
+            IExtendedNoiseRandom<?> context = this.contexts[level - 1];
+            Buffer current = scratch[level];
+            i = 0;
+
+            for (int posZ = current.minZ; posZ < current.minZ + current.depth; ++posZ)
+            {
+                for (int posX = current.minX; posX < current.minX + current.width; ++posX)
+                {
+                    context.initRandom(posX, posZ);
+                    current.data[i++] = this.zoom.applyPixel(context, below, posX, posZ);
+                }
+            }
+
+            below = current;
+        }
+
+        IExtendedNoiseRandom<?> context = this.contexts[levels - 1];
+        context.initRandom(x, z);
+        return this.zoom.applyPixel(context, below, x, z);
+    }
+
+    private void applyRegion(IArea parent, int[] out, int x, int z, int width, int depth)
+    {
+        int levels = this.contexts.length;
+        int[] minX = new int[levels + 1];
+        int[] minZ = new int[levels + 1];
+        int[] maxX = new int[levels + 1];
+        int[] maxZ = new int[levels + 1];
+
+        minX[levels] = x;
+        minZ[levels] = z;
+        maxX[levels] = x + width - 1;
+        maxZ[levels] = z + depth - 1;
+
+        // A zoomed pixel reads its parent at x >> 1 and (x + 1) >> 1
+        for (int level = levels; level > 0; --level)
+        {
+            minX[level - 1] = minX[level] >> 1;
+            minZ[level - 1] = minZ[level] >> 1;
+            maxX[level - 1] = (maxX[level] + 1) >> 1;
+            maxZ[level - 1] = (maxZ[level] + 1) >> 1;
+        }
+
+        Buffer below = new Buffer(minX[0], minZ[0], maxX[0] - minX[0] + 1, maxZ[0] - minZ[0] + 1);
+        int i = 0;
+
+        for (int posZ = minZ[0]; posZ <= maxZ[0]; ++posZ)
+        {
+            for (int posX = minX[0]; posX <= maxX[0]; ++posX)
+            {
+                below.data[i++] = parent.get(posX, posZ);
+            }
+        }
+
+        // The buffer for the level before last is reused for the level after it
+        int[] spare = null;
+
+        for (int level = 1; level <= levels; ++level)
+        {
+            IExtendedNoiseRandom<?> context = this.contexts[level - 1];
+            int levelWidth = maxX[level] - minX[level] + 1;
+            int levelDepth = maxZ[level] - minZ[level] + 1;
+            int[] data = level == levels ? out : (spare != null && spare.length >= levelWidth * levelDepth ? spare : new int[levelWidth * levelDepth]);
+            i = 0;
+
+            for (int posZ = minZ[level]; posZ <= maxZ[level]; ++posZ)
+            {
+                for (int posX = minX[level]; posX <= maxX[level]; ++posX)
+                {
+                    // Same sequence of calls as IAreaTransformer1.run
+                    context.initRandom(posX, posZ);
+                    data[i++] = this.zoom.applyPixel(context, below, posX, posZ);
+                }
+            }
+
+            spare = below.data;
+            below = new Buffer(data, minX[level], minZ[level], levelWidth, levelDepth);
+        }
+    }
+
+    private static class Buffer implements IArea
+    {
+        private final int[] data;
+        private int minX;
+        private int minZ;
+        private int width;
+        private int depth;
+
+        private Buffer(int minX, int minZ, int width, int depth)
+        {
+            this(new int[width * depth], minX, minZ, width, depth);
+        }
+
+        private Buffer(int[] data, int minX, int minZ, int width, int depth)
+        {
+            this.data = data;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.width = width;
+            this.depth = depth;
+        }
+
+        // Covers a different area with the same data array, which must be large enough
+        private void moveTo(int minX, int minZ, int width, int depth)
+        {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.width = width;
+            this.depth = depth;
+        }
+
+        @Override
+        public int get(int x, int z)
+        {
+            int dx = x - this.minX;
+            int dz = z - this.minZ;
+
+            if (dx < 0 || dz < 0 || dx >= this.width || dz >= this.depth)
+            {
+                throw new IllegalStateException("Zoom read " + x + ", " + z + " outside of the level below");
+            }
+
+            return this.data[dx + dz * this.width];
+        }
+    }
+}
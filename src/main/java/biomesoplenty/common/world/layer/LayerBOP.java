@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.common.world.layer.traits.LayerCacheManager;
+import biomesoplenty.common.world.layer.traits.TileArea;
+import biomesoplenty.common.world.layer.traits.TileAreaGraph;
+import biomesoplenty.core.BiomesOPlenty;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.Biomes;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.area.IAreaFactory;
+
+import javax.annotation.Nullable;
+
+/***
+ * The root of a BOP layer stack. Equivalent to Mojang's Layer, but not tied to LazyArea.
+ */
+public class LayerBOP
+{
+    // Size of the regions filled by the tiled engine, in noise coordinates
+    private static final int TILE_SIZE = 64;
+
+    private final IArea area;
+    @Nullable
+    private final LayerCacheManager cacheManager;
+    @Nullable
+    private final TileAreaGraph tileGraph;
+
+    public <T extends IArea> LayerBOP(IAreaFactory<T> factory, @Nullable LayerCacheManager cacheManager)
+    {
+        this.area = factory.make();
+        this.cacheManager = cacheManager;
+        this.tileGraph = null;
+    }
+
+    public LayerBOP(IAreaFactory<TileArea> factory, TileAreaGraph tileGraph)
+    {
+        this.area = factory.make();
+        this.cacheManager = null;
+        this.tileGraph = tileGraph;
+    }
+
+    public int getId(int x, int z)
+    {
+        if (this.tileGraph != null)
+        {
+            TileArea root = (TileArea)this.area;
+
+            synchronized (this.tileGraph)
+            {
+                if (!root.contains(x, z, 1, 1))
+                {
+                    this.tileGraph.fill(root, x & -TILE_SIZE, z & -TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                }
+
+                return root.get(x, z);
+            }
+        }
+
+        if (this.cacheManager != null) this.cacheManager.onLookup();
+        return this.area.get(x, z);
+    }
+
+    public Biome get(int x, int z)
+    {
+        return getBiome(this.getId(x, z));
+    }
+
+    /***
+     * Fills out with the ids of a width by depth region starting at x, z, in row-major order.
+     * A new array is allocated if out is null or too small.
+     */
+    public int[] getIds(@Nullable int[] out, int x, int z, int width, int depth)
+    {
+        int size = width * depth;
+        if (out == null || out.length < size) out = new int[size];
+
+        if (this.tileGraph != null)
+        {
+            this.getTiledIds(out, x, z, width, depth);
+            return out;
+        }
+
+        if (this.cacheManager != null)
+        {
+            // Neighbour-reading layers look at the previous, current and next rows
+            this.cacheManager.ensureMinimumCapacity(3 * (width + 2));
+            this.cacheManager.onLookups(size);
+        }
+
+        int i = 0;
+        for (int dz = 0; dz < depth; ++dz)
+        {
+            for (int dx = 0; dx < width; ++dx)
+            {
+                out[i++] = this.area.get(x + dx, z + dz);
+            }
+        }
+
+        return out;
+    }
+
+    // Fills the region one aligned tile at a time to keep the layer buffers small
+    private void getTiledIds(int[] out, int x, int z, int width, int depth)
+    {
+        TileArea root = (TileArea)this.area;
+
+        synchronized (this.tileGraph)
+        {
+            for (int tileZ = z & -TILE_SIZE; tileZ < z + depth; tileZ += TILE_SIZE)
+            {
+                for (int tileX = x & -TILE_SIZE; tileX < x + width; tileX += TILE_SIZE)
+                {
+                    this.tileGraph.fill(root, tileX, tileZ, TILE_SIZE, TILE_SIZE);
+
+                    int minX = Math.max(x, tileX);
+                    int minZ = Math.max(z, tileZ);
+                    int maxX = Math.min(x + width, tileX + TILE_SIZE);
+                    int maxZ = Math.min(z + depth, tileZ + TILE_SIZE);
+
+                    for (int posZ = minZ; posZ < maxZ; ++posZ)
+                    {
+                        for (int posX = minX; posX < maxX; ++posX)
+                        {
+                            out[(posX - x) + (posZ - z) * width] = root.get(posX, posZ);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public Biome[] getBiomes(@Nullable Biome[] out, int x, int z, int width, int depth)
+    {
+        return toBiomes(out, this.getIds(null, x, z, width, depth), width * depth);
+    }
+
+    /***
+     * Fills out with the biomes for the first size ids. A new array is allocated if out is null or too small.
+     */
+    public static Biome[] toBiomes(@Nullable Biome[] out, int[] ids, int size)
+    {
+        if (out == null || out.length < size) out = new Biome[size];
+
+        for (int i = 0; i < size; ++i)
+        {
+            out[i] = getBiome(ids[i]);
+        }
+
+        return out;
+    }
+
+    public static Biome getBiome(int id)
+    {
+        Biome biome = Registry.BIOME.byId(id);
+
+        if (biome == null)
+        {
+            BiomesOPlenty.logger.warn("Unknown biome id: " + id);
+            return Biomes.DEFAULT;
+        }
+
+        return biome;
+    }
+
+    public enum Engine
+    {
+        LAZY, TILED
+    }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.core.BiomesOPlenty;
+import biomesoplenty.init.ModConfig;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/***
+ * Hands out layer stacks to world generation threads. Up to maxSize threads get a stack of their own,
+ * built on first use and kept for the life of the thread, so their caches don't compete. Any other
+ * threads share a single stack.
+ *
+ * Threads only hold weak references to their stacks, which are owned by the pool. Long lived threads, such as
+ * those of executors shared between worlds, therefore don't keep the stacks of unloaded worlds alive.
+ */
+public class LayerStackPool
+{
+    private final Supplier<LayerBOP> factory;
+    private final int maxSize;
+    private final ThreadLocal<WeakReference<LayerBOP>> threadStacks = new ThreadLocal<>();
+    // Stacks are released when their threads are collected, or with the pool
+    private final Map<Thread, LayerBOP> ownedStacks = new WeakHashMap<>();
+    private volatile LayerBOP sharedStack;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong creationNanos = new AtomicLong();
+
+    public LayerStackPool(Supplier<LayerBOP> factory, int maxSize)
+    {
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    public static LayerStackPool fromConfig(Supplier<LayerBOP> factory)
+    {
+        // Tiled stacks fill whole tiles under a lock, so sharing one between generation threads serializes them
+        boolean perThread = ModConfig.GenerationConfig.perThreadLayerStacks.get() || ModConfig.GenerationConfig.layerEngine.get() == LayerBOP.Engine.TILED;
+        return new LayerStackPool(factory, perThread ? ModConfig.GenerationConfig.maxLayerStacks.get() : 0);
+    }
+
+    public LayerBOP get()
+    {
+        WeakReference<LayerBOP> reference = this.threadStacks.get();
+        LayerBOP stack = reference != null ? reference.get() : null;
+        if (stack != null) return stack;
+
+        synchronized (this.ownedStacks)
+        {
+            if (this.ownedStacks.size() < this.maxSize)
+            {
+                stack = this.create();
+                this.ownedStacks.put(Thread.currentThread(), stack);
+            }
+        }
+
+        // Threads beyond the limit stay on the shared stack rather than checking again on every lookup
+        if (stack == null) stack = this.getShared();
+        this.threadStacks.set(new WeakReference<>(stack));
+        return stack;
+    }
+
+    /***
+     * The stack used by threads without their own. Suitable for infrequent lookups from any thread.
+     */
+    public LayerBOP getShared()
+    {
+        LayerBOP stack = this.sharedStack;
+
+        if (stack == null)
+        {
+            synchronized (this)
+            {
+                stack = this.sharedStack;
+
+                if (stack == null)
+                {
+                    stack = this.create();
+                    this.sharedStack = stack;
+                }
+            }
+        }
+
+        return stack;
+    }
+
+    private LayerBOP create()
+    {
+        long start = System.nanoTime();
+        LayerBOP stack = this.factory.get();
+        long elapsed = System.nanoTime() - start;
+
+        long count = this.createdCount.incrementAndGet();
+        this.creationNanos.addAndGet(elapsed);
+        BiomesOPlenty.logger.debug(String.format("Created biome layer stack %d for thread %s in %.2f ms", count, Thread.currentThread().getName(), elapsed / 1000000.0D));
+        return stack;
+    }
+
+    public int getOwnedCount()
+    {
+        synchronized (this.ownedStacks)
+        {
+            return this.ownedStacks.size();
+        }
+    }
+
+    public long getCreatedCount()
+    {
+        return this.createdCount.get();
+    }
+
+    public long getCreationNanos()
+    {
+        return this.creationNanos.get();
+    }
+}
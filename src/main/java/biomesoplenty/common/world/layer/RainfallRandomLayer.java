@@ -8,14 +8,14 @@
 package biomesoplenty.common.world.layer;
 
 import biomesoplenty.common.world.layer.traits.IBOPAreaTransformer0;
-import biomesoplenty.common.world.layer.traits.IBOPContextExtended;
+import biomesoplenty.common.world.layer.traits.IBOPLayerRandom;
 
 public enum RainfallRandomLayer implements IBOPAreaTransformer0
 {
     INSTANCE;
 
     @Override
-    public int applyPixel(IBOPContextExtended context, int x, int z)
+    public int applyPixel(IBOPLayerRandom context, int x, int z)
     {
         // Choose a random heat value
         return context.nextRandom(12);
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer;
+
+import biomesoplenty.api.biome.BOPBiomes;
+import biomesoplenty.common.world.BOPLayerUtil;
+import biomesoplenty.init.ModBiomes;
+import com.google.common.collect.Lists;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.Biomes;
+import net.minecraft.world.gen.INoiseRandom;
+import net.minecraft.world.gen.layer.LayerUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/***
+ * Everything SubBiomeLayer needs to know about a biome, indexed by biome id. Built once biomes have been
+ * registered so that the layer doesn't allocate or search the registry per pixel.
+ */
+public class SubBiomeTable
+{
+    public static final int NONE = -1;
+    private static final int RARITY_BUCKETS = 100;
+
+    private static volatile SubBiomeTable instance;
+
+    // Indexed by parent biome id, then by the rarity drawn. Buckets with the same candidates are shared
+    private final Bucket[][] commonSubBiomes;
+    private final int[] rareSubBiomeIds;
+    private final int[] mutatedVariantIds;
+    // The result of the rare biome branch, or NONE when the biome is already mutated
+    private final int[] rareBiomeIds;
+
+    private SubBiomeTable(int size)
+    {
+        this.commonSubBiomes = new Bucket[size][];
+        this.rareSubBiomeIds = new int[size];
+        this.mutatedVariantIds = new int[size];
+        this.rareBiomeIds = new int[size];
+
+        for (int id = 0; id < size; ++id)
+        {
+            Biome biome = Registry.BIOME.byId(id);
+            Biome mutatedBiome = Biome.getMutatedVariant(biome);
+
+            this.commonSubBiomes[id] = createBuckets(id);
+            this.rareSubBiomeIds[id] = computeRareSubBiomeId(id);
+            this.mutatedVariantIds[id] = mutatedBiome == null ? NONE : Registry.BIOME.getId(mutatedBiome);
+
+            if (biome == null || !biome.isMutated())
+            {
+                this.rareBiomeIds[id] = mutatedBiome == null ? id : Registry.BIOME.getId(mutatedBiome);
+            }
+            else
+            {
+                this.rareBiomeIds[id] = NONE;
+            }
+        }
+    }
+
+    public static SubBiomeTable get()
+    {
+        SubBiomeTable table = instance;
+        return table != null ? table : rebuild();
+    }
+
+    // Should be called whenever ModBiomes.subBiomes changes
+    public static synchronized SubBiomeTable rebuild()
+    {
+        int size = 0;
+
+        for (Biome biome : Registry.BIOME)
+        {
+            size = Math.max(size, Registry.BIOME.getId(biome) + 1);
+        }
+
+        SubBiomeTable table = new SubBiomeTable(size);
+        instance = table;
+        return table;
+    }
+
+    public boolean contains(int biomeId)
+    {
+        return biomeId >= 0 && biomeId < this.rareSubBiomeIds.length;
+    }
+
+    public int getCommonSubBiomeId(INoiseRandom context, int originalBiomeId)
+    {
+        int rarity = context.nextRandom(RARITY_BUCKETS);
+        Bucket[] buckets = this.commonSubBiomes[originalBiomeId];
+
+        if (buckets == null)
+            return originalBiomeId;
+
+        Bucket bucket = buckets[rarity];
+
+        if (bucket == null)
+            return originalBiomeId;
+
+        int weight = context.nextRandom(bucket.totalWeight);
+        int i = 0;
+
+        while (bucket.cumulativeWeights[i] <= weight) ++i;
+        return bucket.biomeIds[i];
+    }
+
+    public int getRareSubBiomeId(int originalBiomeId)
+    {
+        return this.rareSubBiomeIds[originalBiomeId];
+    }
+
+    public int getMutatedVariantId(int biomeId)
+    {
+        return this.mutatedVariantIds[biomeId];
+    }
+
+    public int getRareBiomeId(int biomeId)
+    {
+        return this.rareBiomeIds[biomeId];
+    }
+
+    private static Bucket[] createBuckets(int parentId)
+    {
+        // Keep the multimap's iteration order, which decides which biome each weight maps to
+        List<ModBiomes.WeightedSubBiome> entries = Lists.newArrayList(ModBiomes.subBiomes.get(parentId));
+
+        if (entries.isEmpty())
+            return null;
+
+        Bucket[] buckets = new Bucket[RARITY_BUCKETS];
+        Bucket previous = null;
+
+        for (int i = 0; i < RARITY_BUCKETS; ++i)
+        {
+            // Matches the comparison previously made per pixel
+            float rarity = (float)i / 100.0f;
+            int count = 0;
+            int totalWeight = 0;
+            int[] biomeIds = new int[entries.size()];
+            int[] cumulativeWeights = new int[entries.size()];
+
+            for (ModBiomes.WeightedSubBiome entry : entries)
+            {
+                if (entry.rarity >= rarity)
+                {
+                    totalWeight += entry.weight;
+                    biomeIds[count] = Registry.BIOME.getId(entry.biome);
+                    cumulativeWeights[count] = totalWeight;
+                    ++count;
+                }
+            }
+
+            if (totalWeight <= 0)
+                continue;
+
+            Bucket bucket = new Bucket(Arrays.copyOf(biomeIds, count), Arrays.copyOf(cumulativeWeights, count), totalWeight);
+            buckets[i] = bucket.equals(previous) ? previous : bucket;
+            previous = buckets[i];
+        }
+
+        return buckets;
+    }
+
+    private static int computeRareSubBiomeId(int originalBiomeId)
+    {
+        if (originalBiomeId == id(Biomes.DESERT)) return id(Biomes.DESERT_HILLS);
+        else if (originalBiomeId == id(Biomes.FOREST)) return id(Biomes.WOODED_HILLS);
+        else if (originalBiomeId == id(Biomes.BIRCH_FOREST)) return id(Biomes.BIRCH_FOREST_HILLS);
+        else if (originalBiomeId == id(Biomes.DARK_FOREST)) return id(Biomes.PLAINS);
+        else if (originalBiomeId == id(Biomes.TAIGA)) return id(Biomes.TAIGA_HILLS);
+        else if (originalBiomeId == id(Biomes.GIANT_TREE_TAIGA)) return id(Biomes.GIANT_TREE_TAIGA_HILLS);
+        else if (originalBiomeId == id(Biomes.SNOWY_TAIGA)) return id(Biomes.SNOWY_TAIGA_HILLS);
+        //Use BOP orchard instead of vanilla forest
+        else if (originalBiomeId == id(Biomes.PLAINS) && BOPBiomes.orchard.isPresent()) return id(BOPBiomes.orchard.get());
+        else if (originalBiomeId == id(Biomes.SNOWY_TUNDRA)) return id(Biomes.SNOWY_MOUNTAINS);
+        else if (originalBiomeId == id(Biomes.JUNGLE)) return id(Biomes.JUNGLE_HILLS);
+        else if (originalBiomeId == id(Biomes.BAMBOO_JUNGLE)) return id(Biomes.BAMBOO_JUNGLE_HILLS);
+        else if (originalBiomeId == BOPLayerUtil.OCEAN) return BOPLayerUtil.DEEP_OCEAN;
+        else if (originalBiomeId == BOPLayerUtil.LUKEWARM_OCEAN) return BOPLayerUtil.DEEP_LUKEWARM_OCEAN;
+        else if (originalBiomeId == BOPLayerUtil.COLD_OCEAN) return BOPLayerUtil.DEEP_COLD_OCEAN;
+        else if (originalBiomeId == BOPLayerUtil.FROZEN_OCEAN) return BOPLayerUtil.DEEP_FROZEN_OCEAN;
+        else if (originalBiomeId == id(Biomes.MOUNTAINS)) return id(Biomes.WOODED_MOUNTAINS);
+        else if (originalBiomeId == id(Biomes.SAVANNA)) return id(Biomes.SAVANNA_PLATEAU);
+        else if (LayerUtil.isSame(originalBiomeId, id(Biomes.WOODED_BADLANDS_PLATEAU))) return id(Biomes.BADLANDS);
+
+        return originalBiomeId;
+    }
+
+    private static int id(Biome biome)
+    {
+        return Registry.BIOME.getId(biome);
+    }
+
+    private static class Bucket
+    {
+        private final int[] biomeIds;
+        private final int[] cumulativeWeights;
+        private final int totalWeight;
+
+        private Bucket(int[] biomeIds, int[] cumulativeWeights, int totalWeight)
+        {
+            this.biomeIds = biomeIds;
+            this.cumulativeWeights = cumulativeWeights;
+            this.totalWeight = totalWeight;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Bucket)) return false;
+            Bucket other = (Bucket)obj;
+            return Arrays.equals(this.biomeIds, other.biomeIds) && Arrays.equals(this.cumulativeWeights, other.cumulativeWeights);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Arrays.hashCode(this.biomeIds) + Arrays.hashCode(this.cumulativeWeights);
+        }
+    }
+}
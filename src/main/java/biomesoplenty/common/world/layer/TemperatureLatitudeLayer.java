@@ -8,7 +8,7 @@
 package biomesoplenty.common.world.layer;
 
 import biomesoplenty.common.world.layer.traits.IBOPAreaTransformer0;
-import biomesoplenty.common.world.layer.traits.IBOPContextExtended;
+import biomesoplenty.common.world.layer.traits.IBOPLayerRandom;
 import net.minecraft.util.math.MathHelper;
 
 public enum TemperatureLatitudeLayer implements IBOPAreaTransformer0
@@ -21,7 +21,7 @@ public enum TemperatureLatitudeLayer implements IBOPAreaTransformer0
     private static final double AMPLITUDE = 8.9999D / HALF_PERIOD;
 
     @Override
-    public int applyPixel(IBOPContextExtended context, int x, int z)
+    public int applyPixel(IBOPLayerRandom context, int x, int z)
     {
         int offset = (int) (context.getWorldSeed() % ((int) (PERIOD * 2)));
 
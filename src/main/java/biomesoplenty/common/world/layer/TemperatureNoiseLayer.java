@@ -9,7 +9,7 @@ package biomesoplenty.common.world.layer;
 
 import biomesoplenty.common.world.SimplexNoise;
 import biomesoplenty.common.world.layer.traits.IBOPAreaTransformer0;
-import biomesoplenty.common.world.layer.traits.IBOPContextExtended;
+import biomesoplenty.common.world.layer.traits.IBOPLayerRandom;
 
 public enum TemperatureNoiseLayer implements IBOPAreaTransformer0
 {
@@ -17,6 +17,8 @@ public enum TemperatureNoiseLayer implements IBOPAreaTransformer0
     MEDIUM_ZONES(0.10D),
     LARGE_ZONES(0.05D);
 
+    private static final SimplexNoise NOISE = new SimplexNoise();
+
     private final double scale;
 
     TemperatureNoiseLayer(double scale)
@@ -25,12 +27,35 @@ public enum TemperatureNoiseLayer implements IBOPAreaTransformer0
     }
 
     @Override
-    public int applyPixel(IBOPContextExtended context, int x, int z)
+    public int applyPixel(IBOPLayerRandom context, int x, int z)
+    {
+        return getZone(NOISE.sample((x + getXOffset(context)) * this.scale, (z + getZOffset(context)) * this.scale));
+    }
+
+    @Override
+    public void applyRegion(IBOPLayerRandom context, int[] out, int x, int z, int width, int depth)
+    {
+        double[] noise = new double[width * depth];
+        NOISE.fillTile(noise, x, z, width, depth, getXOffset(context), getZOffset(context), this.scale);
+
+        for (int i = 0; i < noise.length; ++i)
+        {
+            out[i] = getZone(noise[i]);
+        }
+    }
+
+    private static double getXOffset(IBOPLayerRandom context)
     {
-        double xOffset = (double)(context.getWorldSeed() & 0xFFFFFF) * 0.000001D;
-        double zOffset = (double)(context.getWorldSeed() & 0xFFFFFF) * 0.000002D;
-        double noiseVal = SimplexNoise.noise((x + xOffset) * this.scale, (z + zOffset) * this.scale);
+        return (double)(context.getWorldSeed() & 0xFFFFFF) * 0.000001D;
+    }
 
+    private static double getZOffset(IBOPLayerRandom context)
+    {
+        return (double)(context.getWorldSeed() & 0xFFFFFF) * 0.000002D;
+    }
+
+    private static int getZone(double noiseVal)
+    {
         // boundaries were determined empirically by analyzing statistically output from the SimplexNoise function, and splitting into 9 equally likely groups
         if (noiseVal < -0.619D) return 0;
         else if (noiseVal < -0.503D) return 1;
@@ -26,13 +26,40 @@ public interface IBOPAreaTransformer0
 
         // Create a new IAreaFactory
         return () ->
-            // Return a new IArea, with the below IPixelTransformer
-            context.createResult((x, z) ->
+            // Return a new IArea, with the below IRegionTransformer
+            context.createResult(new IRegionTransformer()
             {
-                context.initRandom((long)(x), (long)(z));
-                return this.applyPixel(bopContext, x, z);
+                @Override
+                public int apply(int x, int z)
+                {
+                    context.initRandom((long)(x), (long)(z));
+                    return IBOPAreaTransformer0.this.applyPixel(bopContext, x, z);
+                }
+
+                @Override
+                public void applyRegion(int[] out, int x, int z, int width, int depth)
+                {
+                    IBOPAreaTransformer0.this.applyRegion(bopContext, out, x, z, width, depth);
+                }
             });
     }
 
-    int applyPixel(IBOPContextExtended context, int x, int z);
+    int applyPixel(IBOPLayerRandom context, int x, int z);
+
+    /***
+     * Fills out with a width by depth region starting at x, z, in row-major order. Transformers
+     * with a faster way to compute many positions at once may override this.
+     */
+    default void applyRegion(IBOPLayerRandom context, int[] out, int x, int z, int width, int depth)
+    {
+        int i = 0;
+        for (int dz = 0; dz < depth; ++dz)
+        {
+            for (int dx = 0; dx < width; ++dx)
+            {
+                context.initRandom((long)(x + dx), (long)(z + dz));
+                out[i++] = this.applyPixel(context, x + dx, z + dz);
+            }
+        }
+    }
 }
@@ -7,13 +7,14 @@
  ******************************************************************************/
 package biomesoplenty.common.world.layer.traits;
 
+import biomesoplenty.common.world.layer.BiomeTraits;
 import net.minecraft.world.gen.IExtendedNoiseRandom;
 import net.minecraft.world.gen.area.IArea;
 
 /***
  * Provides extra information beyond that used by Mojang.
  */
-public interface IBOPContextExtended<R extends IArea> extends IExtendedNoiseRandom<R>
+public interface IBOPContextExtended<R extends IArea> extends IExtendedNoiseRandom<R>, IBOPLayerRandom
 {
-    long getWorldSeed();
+    BiomeTraits getBiomeTraits();
 }
@@ -0,0 +1,20 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import net.minecraft.world.gen.INoiseRandom;
+
+/***
+ * The part of a context used to compute pixels, without the means of creating areas.
+ */
+public interface IBOPLayerRandom extends INoiseRandom
+{
+    void initRandom(long x, long z);
+
+    long getWorldSeed();
+}
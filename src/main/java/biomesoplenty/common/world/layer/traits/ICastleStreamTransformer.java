@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import net.minecraft.world.gen.IExtendedNoiseRandom;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.area.IAreaFactory;
+import net.minecraft.world.gen.layer.traits.ICastleTransformer;
+
+import java.util.Arrays;
+
+/***
+ * A castle transformer which reads its parent a row at a time, keeping the rows above and below in a
+ * rolling buffer rather than fetching all four neighbours of every pixel.
+ *
+ * Regions filled by the tiled engine read each parent row once. Single pixels requested by lazy areas
+ * go through a few small windows of three rows, which are filled as neighbours are needed and roll
+ * down as consecutive rows are requested.
+ */
+public interface ICastleStreamTransformer extends ICastleTransformer
+{
+    @Override
+    default <R extends IArea> IAreaFactory<R> run(IExtendedNoiseRandom<R> context, IAreaFactory<R> areaFactory)
+    {
+        return () ->
+        {
+            R area = areaFactory.make();
+            return context.createResult(new RowStream(this, context, area), area);
+        };
+    }
+
+    class RowStream implements IRegionTransformer
+    {
+        private static final int WINDOW_BITS = 4;
+        private static final int WINDOW_SIZE = 1 << WINDOW_BITS;
+        // Must be a power of two
+        private static final int WINDOW_COUNT = 8;
+        private static final int UNKNOWN = Integer.MIN_VALUE;
+
+        private final ICastleTransformer transformer;
+        private final IExtendedNoiseRandom<?> context;
+        private final IArea area;
+        // Null for tile areas, whose footprints are measured through apply and must see every read
+        private final Window[] windows;
+
+        private RowStream(ICastleTransformer transformer, IExtendedNoiseRandom<?> context, IArea area)
+        {
+            this.transformer = transformer;
+            this.context = context;
+            this.area = area;
+
+            if (area instanceof TileArea)
+            {
+                this.windows = null;
+            }
+            else
+            {
+                this.windows = new Window[WINDOW_COUNT];
+                for (int i = 0; i < WINDOW_COUNT; ++i) this.windows[i] = new Window();
+            }
+        }
+
+        @Override
+        public int apply(int x, int z)
+        {
+            this.context.initRandom((long)x, (long)z);
+
+            if (this.windows == null)
+            {
+                return this.transformer.applyPixel(this.context, this.area, x, z);
+            }
+
+            Window window = this.windows[(x >> WINDOW_BITS) & (WINDOW_COUNT - 1)];
+            window.moveTo(x & -WINDOW_SIZE, z);
+            return this.transformer.apply(this.context, window.get(this.area, x, z - 1), window.get(this.area, x + 1, z), window.get(this.area, x, z + 1), window.get(this.area, x - 1, z), window.get(this.area, x, z));
+        }
+
+        @Override
+        public void applyRegion(int[] out, int x, int z, int width, int depth)
+        {
+            // Each row covers one pixel either side of the region
+            int[] north = new int[width + 2];
+            int[] center = new int[width + 2];
+            int[] south = new int[width + 2];
+            this.readRow(north, x - 1, z - 1);
+            this.readRow(center, x - 1, z);
+
+            int i = 0;
+            for (int dz = 0; dz < depth; ++dz)
+            {
+                this.readRow(south, x - 1, z + dz + 1);
+
+                for (int dx = 0; dx < width; ++dx)
+                {
+                    this.context.initRandom((long)(x + dx), (long)(z + dz));
+                    out[i++] = this.transformer.apply(this.context, north[dx + 1], center[dx + 2], south[dx + 1], center[dx], center[dx + 1]);
+                }
+
+                int[] previous = north;
+                north = center;
+                center = south;
+                south = previous;
+            }
+        }
+
+        private void readRow(int[] row, int x, int z)
+        {
+            for (int i = 0; i < row.length; ++i)
+            {
+                row[i] = this.area.get(x + i, z);
+            }
+        }
+
+        // Three rows centred on centerZ, covering a block of columns and one column either side
+        private static class Window
+        {
+            private final int[][] rows = new int[3][WINDOW_SIZE + 2];
+            private int blockX;
+            private int centerZ;
+            // Index in rows of the row above the centre
+            private int top;
+            private boolean valid;
+
+            private void moveTo(int blockX, int z)
+            {
+                if (this.valid && this.blockX == blockX)
+                {
+                    if (z == this.centerZ) return;
+
+                    if (z == this.centerZ + 1)
+                    {
+                        // The old top row becomes the new bottom row
+                        Arrays.fill(this.rows[this.top], UNKNOWN);
+                        this.top = (this.top + 1) % 3;
+                        this.centerZ = z;
+                        return;
+                    }
+                }
+
+                for (int[] row : this.rows) Arrays.fill(row, UNKNOWN);
+                this.blockX = blockX;
+                this.centerZ = z;
+                this.top = 0;
+                this.valid = true;
+            }
+
+            private int get(IArea area, int x, int z)
+            {
+                int[] row = this.rows[(this.top + z - this.centerZ + 1) % 3];
+                int index = x - this.blockX + 1;
+                int value = row[index];
+
+                if (value == UNKNOWN)
+                {
+                    value = area.get(x, z);
+                    row[index] = value;
+                }
+
+                return value;
+            }
+        }
+    }
+}
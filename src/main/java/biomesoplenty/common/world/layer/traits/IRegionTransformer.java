@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
+
+/***
+ * A pixel transformer which can also compute a whole region at once. Used by the tiled engine
+ * to fill buffers without going through apply for every position.
+ */
+public interface IRegionTransformer extends IPixelTransformer
+{
+    /***
+     * Fills out with the values of a width by depth region starting at x, z, in row-major order.
+     * Must produce the same values as apply.
+     */
+    void applyRegion(int[] out, int x, int z, int width, int depth);
+}
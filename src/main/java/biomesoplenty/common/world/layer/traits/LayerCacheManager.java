@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import biomesoplenty.core.BiomesOPlenty;
+import biomesoplenty.init.ModConfig;
+import com.google.common.collect.Maps;
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Decides the cache capacity of every area in a single layer stack. Capacities start from a configured
+ * base size, may be pinned per layer by name, and may be adjusted at runtime according to measured hit rates.
+ */
+public class LayerCacheManager
+{
+    // Mojang's upper bound for caches derived from a parent
+    private static final int DERIVED_SIZE_LIMIT = 1024;
+    private static final int REBALANCE_INTERVAL = 65536;
+
+    private final int baseSize;
+    private final int maxSize;
+    private final Map<String, Integer> sizeOverrides;
+    private final boolean adaptive;
+    private final int budget;
+
+    private final Map<LazyAreaBOP, AdaptiveState> areas = Maps.newLinkedHashMap();
+    private final AtomicInteger lookups = new AtomicInteger();
+    // The widest capacity asked for by ensureMinimumCapacity so far
+    private volatile int minimumCapacity;
+
+    public LayerCacheManager(int baseSize, int maxSize, Map<String, Integer> sizeOverrides, boolean adaptive, int budget)
+    {
+        this.baseSize = Math.max(1, baseSize);
+        this.maxSize = Math.max(this.baseSize, maxSize);
+        this.sizeOverrides = sizeOverrides;
+        this.adaptive = adaptive;
+        this.budget = budget;
+    }
+
+    public static LayerCacheManager fromConfig()
+    {
+        return new LayerCacheManager(ModConfig.GenerationConfig.layerCacheSize.get(), ModConfig.GenerationConfig.layerCacheMaxSize.get(), parseSizeOverrides(ModConfig.GenerationConfig.layerCacheSizes.get()), ModConfig.GenerationConfig.adaptiveLayerCache.get(), ModConfig.GenerationConfig.layerCacheBudget.get());
+    }
+
+    private static Map<String, Integer> parseSizeOverrides(List<? extends String> entries)
+    {
+        Map<String, Integer> overrides = Maps.newHashMap();
+
+        for (String entry : entries)
+        {
+            String[] parts = entry.split("=");
+
+            try
+            {
+                if (parts.length != 2) throw new NumberFormatException();
+                overrides.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+            }
+            catch (NumberFormatException e)
+            {
+                BiomesOPlenty.logger.warn("Ignoring malformed layer cache size entry " + entry + ", expected name=size");
+            }
+        }
+
+        return overrides;
+    }
+
+    public int getBaseSize()
+    {
+        return this.baseSize;
+    }
+
+    public int getDerivedSize(int parentSize)
+    {
+        return Math.min(Math.min(DERIVED_SIZE_LIMIT, this.maxSize), Math.max(this.baseSize, parentSize * 4));
+    }
+
+    public LazyAreaBOP createArea(Long2IntLinkedOpenHashMap cache, int maxCache, IPixelTransformer transformer)
+    {
+        LazyAreaBOP area = new LazyAreaBOP(this, cache, maxCache, transformer);
+
+        synchronized (this.areas)
+        {
+            this.areas.put(area, new AdaptiveState());
+        }
+
+        return area;
+    }
+
+    public void applySizeOverride(LazyAreaBOP area)
+    {
+        Integer size = this.sizeOverrides.get(area.getName());
+        if (size == null) return;
+
+        area.setMaxCache(size);
+
+        // Pinned areas are left alone by the adaptive mode
+        synchronized (this.areas)
+        {
+            AdaptiveState state = this.areas.get(area);
+            if (state != null) state.pinned = true;
+        }
+    }
+
+    /***
+     * Ensures every area can hold at least the given number of entries, for callers which
+     * are about to sweep a region of known width.
+     */
+    public void ensureMinimumCapacity(int capacity)
+    {
+        int target = Math.min(this.maxSize, capacity);
+        if (target <= this.minimumCapacity) return;
+
+        synchronized (this.areas)
+        {
+            if (target <= this.minimumCapacity) return;
+            this.minimumCapacity = target;
+
+            for (Map.Entry<LazyAreaBOP, AdaptiveState> entry : this.areas.entrySet())
+            {
+                // Sizes pinned by the config are kept as they are
+                if (entry.getValue().pinned) continue;
+
+                LazyAreaBOP area = entry.getKey();
+                if (area.getMaxCache() < target) area.setMaxCache(target);
+            }
+        }
+    }
+
+    // Called once per query against the stack
+    public void onLookup()
+    {
+        this.onLookups(1);
+    }
+
+    public void onLookups(int count)
+    {
+        if (!this.adaptive) return;
+
+        int after = this.lookups.addAndGet(count);
+
+        if ((after - count) / REBALANCE_INTERVAL != after / REBALANCE_INTERVAL)
+        {
+            this.rebalance();
+        }
+    }
+
+    private void rebalance()
+    {
+        synchronized (this.areas)
+        {
+            long used = 0;
+            for (LazyAreaBOP area : this.areas.keySet()) used += area.getMaxCache();
+
+            // Never shrink below what region queries have asked for
+            int minSize = Math.max(this.baseSize, this.minimumCapacity);
+
+            for (Map.Entry<LazyAreaBOP, AdaptiveState> entry : this.areas.entrySet())
+            {
+                LazyAreaBOP area = entry.getKey();
+                AdaptiveState state = entry.getValue();
+                long[] stats = area.drainStats();
+                long total = stats[0] + stats[1];
+
+                if (state.pinned) continue;
+
+                int size = area.getMaxCache();
+                int newSize = size;
+
+                if (total == 0)
+                {
+                    // Idle areas gradually give their memory back
+                    newSize = Math.max(minSize, size / 2);
+                    state.grew = false;
+                }
+                else
+                {
+                    double hitRate = (double)stats[0] / (double)total;
+
+                    if (state.grew && hitRate - state.lastHitRate < 0.01D)
+                    {
+                        // The last increase didn't pay off, undo it
+                        newSize = Math.max(minSize, size / 2);
+                        state.grew = false;
+                    }
+                    else if (hitRate < 0.9D && size < this.maxSize && used + size <= this.budget)
+                    {
+                        newSize = Math.min(this.maxSize, size * 2);
+                        state.grew = true;
+                    }
+                    else
+                    {
+                        state.grew = false;
+                    }
+
+                    state.lastHitRate = hitRate;
+                }
+
+                if (newSize != size)
+                {
+                    used += newSize - size;
+                    area.setMaxCache(newSize);
+                }
+            }
+
+            BiomesOPlenty.logger.debug("Rebalanced layer caches, " + used + " of " + this.budget + " entries in use");
+        }
+    }
+
+    private static class AdaptiveState
+    {
+        private boolean pinned;
+        private boolean grew;
+        private double lastHitRate;
+    }
+}
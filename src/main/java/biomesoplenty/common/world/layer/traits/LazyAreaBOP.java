@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
+
+/***
+ * An equivalent of Mojang's LazyArea whose cache capacity may be changed after creation
+ * and which records how often its cache is hit.
+ */
+public class LazyAreaBOP implements IArea
+{
+    private final IPixelTransformer transformer;
+    private final Long2IntLinkedOpenHashMap cache;
+    private final LayerCacheManager cacheManager;
+    private String name = "";
+    private volatile int maxCache;
+
+    // Guarded by the cache
+    private long hits;
+    private long misses;
+
+    public LazyAreaBOP(LayerCacheManager cacheManager, Long2IntLinkedOpenHashMap cache, int maxCache, IPixelTransformer transformer)
+    {
+        this.cacheManager = cacheManager;
+        this.cache = cache;
+        this.maxCache = maxCache;
+        this.transformer = transformer;
+    }
+
+    @Override
+    public int get(int x, int z)
+    {
+        long key = ChunkPos.asLong(x, z);
+
+        synchronized (this.cache)
+        {
+            int value = this.cache.get(key);
+
+            if (value != Integer.MIN_VALUE)
+            {
+                ++this.hits;
+                return value;
+            }
+
+            ++this.misses;
+            value = this.transformer.apply(x, z);
+            this.cache.put(key, value);
+
+            while (this.cache.size() > this.maxCache)
+            {
+                this.cache.removeFirstInt();
+            }
+
+            return value;
+        }
+    }
+
+    public int getMaxCache()
+    {
+        return this.maxCache;
+    }
+
+    public void setMaxCache(int maxCache)
+    {
+        this.maxCache = Math.max(1, maxCache);
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+        this.cacheManager.applySizeOverride(this);
+    }
+
+    /***
+     * Returns the number of hits and misses since the last call, in that order, and resets them.
+     */
+    public long[] drainStats()
+    {
+        synchronized (this.cache)
+        {
+            long[] stats = new long[] { this.hits, this.misses };
+            this.hits = 0;
+            this.misses = 0;
+            return stats;
+        }
+    }
+}
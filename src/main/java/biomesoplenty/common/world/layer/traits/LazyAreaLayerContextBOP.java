@@ -7,17 +7,66 @@
  ******************************************************************************/
 package biomesoplenty.common.world.layer.traits;
 
+import biomesoplenty.common.world.layer.BiomeTraits;
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import net.minecraft.world.gen.ImprovedNoiseGenerator;
 import net.minecraft.world.gen.LazyAreaLayerContext;
-import net.minecraft.world.gen.area.LazyArea;
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
 
-public class LazyAreaLayerContextBOP extends LazyAreaLayerContext implements IBOPContextExtended<LazyArea>
+public class LazyAreaLayerContextBOP implements IBOPContextExtended<LazyAreaBOP>
 {
-    private long worldSeed;
+    private final long worldSeed;
+    private final BiomeTraits biomeTraits;
+    private final LayerCacheManager cacheManager;
+    private final Long2IntLinkedOpenHashMap cache;
 
-    public LazyAreaLayerContextBOP(int maxCacheSize, long seed, long seedModifier)
+    // Random values are taken from a vanilla context so that seeds produce exactly the same layers as before
+    private final LazyAreaLayerContext random;
+
+    public LazyAreaLayerContextBOP(LayerCacheManager cacheManager, BiomeTraits biomeTraits, long seed, long seedModifier)
     {
-        super(maxCacheSize, seed, seedModifier);
         this.worldSeed = seed;
+        this.biomeTraits = biomeTraits;
+        this.cacheManager = cacheManager;
+        this.cache = new Long2IntLinkedOpenHashMap(16, 0.25F);
+        this.cache.defaultReturnValue(Integer.MIN_VALUE);
+        this.random = new LazyAreaLayerContext(0, seed, seedModifier);
+    }
+
+    @Override
+    public LazyAreaBOP createResult(IPixelTransformer transformer)
+    {
+        return this.cacheManager.createArea(this.cache, this.cacheManager.getBaseSize(), transformer);
+    }
+
+    @Override
+    public LazyAreaBOP createResult(IPixelTransformer transformer, LazyAreaBOP area)
+    {
+        return this.cacheManager.createArea(this.cache, this.cacheManager.getDerivedSize(area.getMaxCache()), transformer);
+    }
+
+    @Override
+    public LazyAreaBOP createResult(IPixelTransformer transformer, LazyAreaBOP area1, LazyAreaBOP area2)
+    {
+        return this.cacheManager.createArea(this.cache, this.cacheManager.getDerivedSize(Math.max(area1.getMaxCache(), area2.getMaxCache())), transformer);
+    }
+
+    @Override
+    public void initRandom(long x, long z)
+    {
+        this.random.initRandom(x, z);
+    }
+
+    @Override
+    public int nextRandom(int bound)
+    {
+        return this.random.nextRandom(bound);
+    }
+
+    @Override
+    public ImprovedNoiseGenerator getBiomeNoise()
+    {
+        return this.random.getBiomeNoise();
     }
 
     @Override
@@ -25,4 +74,10 @@ public class LazyAreaLayerContextBOP extends LazyAreaLayerContext implements IBO
     {
         return this.worldSeed;
     }
+
+    @Override
+    public BiomeTraits getBiomeTraits()
+    {
+        return this.biomeTraits;
+    }
 }
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import net.minecraft.world.gen.area.IArea;
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
+
+import java.util.List;
+
+/***
+ * A node in a compiled layer graph. Values are read from a buffer filled by TileAreaGraph, and
+ * positions outside of it are computed directly.
+ */
+public class TileArea implements IArea
+{
+    private final TileAreaGraph graph;
+    final IPixelTransformer transformer;
+    final List<TileArea> declaredParents;
+
+    // Used for reads which fall outside of the buffer
+    final Long2IntLinkedOpenHashMap fallbackCache;
+
+    int[] data = new int[0];
+    int minX;
+    int minZ;
+    int width;
+    int depth;
+
+    // Set when the graph is compiled
+    TileAreaGraph.Footprint[] footprints;
+
+    // The region needed by the fill in progress
+    boolean required;
+    int reqMinX;
+    int reqMinZ;
+    int reqMaxX;
+    int reqMaxZ;
+
+    public TileArea(TileAreaGraph graph, IPixelTransformer transformer, TileArea... parents)
+    {
+        this.graph = graph;
+        this.transformer = transformer;
+        this.declaredParents = ImmutableList.copyOf(parents);
+        this.fallbackCache = new Long2IntLinkedOpenHashMap(16, 0.25F);
+        this.fallbackCache.defaultReturnValue(Integer.MIN_VALUE);
+    }
+
+    @Override
+    public int get(int x, int z)
+    {
+        int dx = x - this.minX;
+        int dz = z - this.minZ;
+
+        if (dx >= 0 && dz >= 0 && dx < this.width && dz < this.depth)
+        {
+            return this.data[dx + dz * this.width];
+        }
+
+        return this.graph.compute(this, x, z);
+    }
+
+    void require(int minX, int minZ, int maxX, int maxZ)
+    {
+        if (!this.required)
+        {
+            this.required = true;
+            this.reqMinX = minX;
+            this.reqMinZ = minZ;
+            this.reqMaxX = maxX;
+            this.reqMaxZ = maxZ;
+        }
+        else
+        {
+            this.reqMinX = Math.min(this.reqMinX, minX);
+            this.reqMinZ = Math.min(this.reqMinZ, minZ);
+            this.reqMaxX = Math.max(this.reqMaxX, maxX);
+            this.reqMaxZ = Math.max(this.reqMaxZ, maxZ);
+        }
+    }
+
+    public boolean contains(int x, int z, int width, int depth)
+    {
+        return x >= this.minX && z >= this.minZ && x + width <= this.minX + this.width && z + depth <= this.minZ + this.depth;
+    }
+}
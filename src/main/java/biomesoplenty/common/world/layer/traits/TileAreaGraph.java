@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/***
+ * Executes a layer stack built from TileAreaLayerContextBOP as a series of passes over int buffers,
+ * one per layer, rather than pixel by pixel through cached lambdas.
+ *
+ * The layers themselves are left untouched. When the graph is first used, every layer is probed at a
+ * handful of positions to find which parents it reads and how far around each position it looks.
+ * Requests are then served by working out the region each layer must cover, from the output back to
+ * the sources, and filling the buffers from the sources forwards. Reads which fall outside of the
+ * measured footprints are computed directly, so results are always identical to the lazy engine.
+ */
+public class TileAreaGraph
+{
+    private static final int FALLBACK_CACHE_SIZE = 1024;
+    // Extra pixels around each measured footprint, for neighbours which the probes didn't happen to read
+    private static final int MARGIN = 1;
+    // Positions used to measure footprints. Includes every parity and some distant points to tell zooms apart
+    private static final int[][] PROBES = { { 0, 0 }, { 1, 1 }, { 2, 3 }, { 3, 2 }, { -1, -2 }, { -3, -1 }, { 10001, -7779 }, { 10002, -7778 }, { -20003, 30002 }, { -20004, 30001 } };
+    private static final int FAR = 4096;
+    private static final int MAX_OFFSET = 16;
+    // Fused zooms read their parent several levels down
+    private static final int MAX_SHIFT = 8;
+
+    private TileArea root;
+    private List<TileArea> order;
+
+    private int computeDepth;
+    private int probeX;
+    private int probeZ;
+    private Map<TileArea, List<int[]>> probeReads;
+
+    /***
+     * Ensures the buffer of root covers the given region. Root must be the same area every time.
+     */
+    public void fill(TileArea root, int x, int z, int width, int depth)
+    {
+        if (this.order == null)
+        {
+            this.compile(root);
+        }
+        else if (root != this.root)
+        {
+            throw new IllegalArgumentException("A tile graph may only be filled from a single root");
+        }
+
+        if (root.contains(x, z, width, depth)) return;
+
+        for (TileArea node : this.order) node.required = false;
+        root.require(x, z, x + width - 1, z + depth - 1);
+
+        // Consumers come after their parents, so walking backwards unions every requirement before it is passed on
+        for (int i = this.order.size() - 1; i >= 0; --i)
+        {
+            TileArea node = this.order.get(i);
+            if (!node.required) continue;
+
+            for (Footprint footprint : node.footprints)
+            {
+                if (footprint.shift < 0) continue;
+
+                footprint.parent.require((node.reqMinX >> footprint.shift) + footprint.minX, (node.reqMinZ >> footprint.shift) + footprint.minZ,
+                        (node.reqMaxX >> footprint.shift) + footprint.maxX, (node.reqMaxZ >> footprint.shift) + footprint.maxZ);
+            }
+        }
+
+        for (TileArea node : this.order)
+        {
+            if (node.required) this.fillNode(node);
+        }
+    }
+
+    private void fillNode(TileArea node)
+    {
+        int width = node.reqMaxX - node.reqMinX + 1;
+        int depth = node.reqMaxZ - node.reqMinZ + 1;
+
+        // Values only depend on position, so anything already buffered is still correct
+        if (node.contains(node.reqMinX, node.reqMinZ, width, depth)) return;
+
+        int[] data = node.data.length >= width * depth ? node.data : new int[width * depth];
+        node.width = 0;
+        node.depth = 0;
+
+        if (node.transformer instanceof IRegionTransformer)
+        {
+            ((IRegionTransformer)node.transformer).applyRegion(data, node.reqMinX, node.reqMinZ, width, depth);
+        }
+        else
+        {
+            int i = 0;
+            for (int z = node.reqMinZ; z <= node.reqMaxZ; ++z)
+            {
+                for (int x = node.reqMinX; x <= node.reqMaxX; ++x)
+                {
+                    data[i++] = node.transformer.apply(x, z);
+                }
+            }
+        }
+
+        node.data = data;
+        node.minX = node.reqMinX;
+        node.minZ = node.reqMinZ;
+        node.width = width;
+        node.depth = depth;
+    }
+
+    // Computes a value which isn't in the buffer of a node
+    int compute(TileArea node, int x, int z)
+    {
+        if (this.probeReads != null && this.computeDepth == 0)
+        {
+            this.probeReads.computeIfAbsent(node, (key) -> Lists.newArrayList()).add(new int[] { this.probeX, this.probeZ, x, z });
+        }
+
+        long key = ChunkPos.asLong(x, z);
+        int value = node.fallbackCache.get(key);
+
+        if (value != Integer.MIN_VALUE)
+        {
+            return value;
+        }
+
+        ++this.computeDepth;
+
+        try
+        {
+            value = node.transformer.apply(x, z);
+        }
+        finally
+        {
+            --this.computeDepth;
+        }
+
+        node.fallbackCache.put(key, value);
+
+        if (node.fallbackCache.size() > FALLBACK_CACHE_SIZE)
+        {
+            node.fallbackCache.removeFirstInt();
+        }
+
+        return value;
+    }
+
+    private void compile(TileArea root)
+    {
+        List<TileArea> order = Lists.newArrayList();
+        this.visit(root, Sets.newIdentityHashSet(), order);
+        this.root = root;
+        this.order = order;
+    }
+
+    // Orders the graph so that parents always come before their consumers
+    private void visit(TileArea node, Set<TileArea> visited, List<TileArea> order)
+    {
+        if (!visited.add(node)) return;
+
+        this.probe(node);
+
+        for (Footprint footprint : node.footprints)
+        {
+            this.visit(footprint.parent, visited, order);
+        }
+
+        order.add(node);
+    }
+
+    private void probe(TileArea node)
+    {
+        this.probeReads = Maps.newIdentityHashMap();
+
+        try
+        {
+            for (int[] probe : PROBES)
+            {
+                this.probeX = probe[0];
+                this.probeZ = probe[1];
+                node.transformer.apply(probe[0], probe[1]);
+            }
+        }
+        finally
+        {
+            this.computeDepth = 0;
+        }
+
+        Map<TileArea, List<int[]>> reads = this.probeReads;
+        this.probeReads = null;
+
+        // Parents handed to createResult are included even if the probes never read them
+        Set<TileArea> parents = Sets.newLinkedHashSet(node.declaredParents);
+        parents.addAll(reads.keySet());
+
+        List<Footprint> footprints = Lists.newArrayList();
+        int commonShift = 0;
+
+        for (TileArea parent : parents)
+        {
+            List<int[]> parentReads = reads.get(parent);
+            if (parentReads != null) commonShift = Math.max(commonShift, findShift(parentReads));
+        }
+
+        for (TileArea parent : parents)
+        {
+            List<int[]> parentReads = reads.get(parent);
+
+            if (parentReads == null)
+            {
+                footprints.add(new Footprint(parent, commonShift, -MARGIN, -MARGIN, MARGIN, MARGIN));
+                continue;
+            }
+
+            int shift = findShift(parentReads);
+
+            if (shift < 0)
+            {
+                // Unknown access pattern, this parent is only read through the fallback
+                footprints.add(new Footprint(parent, -1, 0, 0, 0, 0));
+                continue;
+            }
+
+            int minX = Integer.MAX_VALUE;
+            int minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxZ = Integer.MIN_VALUE;
+
+            for (int[] read : parentReads)
+            {
+                int offsetX = read[2] - (read[0] >> shift);
+                int offsetZ = read[3] - (read[1] >> shift);
+                minX = Math.min(minX, offsetX);
+                minZ = Math.min(minZ, offsetZ);
+                maxX = Math.max(maxX, offsetX);
+                maxZ = Math.max(maxZ, offsetZ);
+            }
+
+            footprints.add(new Footprint(parent, shift, minX - MARGIN, minZ - MARGIN, maxX + MARGIN, maxZ + MARGIN));
+        }
+
+        node.footprints = footprints.toArray(new Footprint[0]);
+    }
+
+    // Finds how far coordinates are shifted between a layer and a parent, or -1 if it isn't clear
+    private static int findShift(List<int[]> reads)
+    {
+        for (int shift = 0; shift <= MAX_SHIFT; ++shift)
+        {
+            boolean matches = true;
+            boolean sawFar = false;
+
+            for (int[] read : reads)
+            {
+                if (Math.abs(read[0]) < FAR || Math.abs(read[1]) < FAR) continue;
+
+                sawFar = true;
+
+                if (Math.abs(read[2] - (read[0] >> shift)) > MAX_OFFSET || Math.abs(read[3] - (read[1] >> shift)) > MAX_OFFSET)
+                {
+                    matches = false;
+                    break;
+                }
+            }
+
+            if (!sawFar) return -1;
+            if (matches) return shift;
+        }
+
+        return -1;
+    }
+
+    static class Footprint
+    {
+        final TileArea parent;
+        final int shift;
+        final int minX;
+        final int minZ;
+        final int maxX;
+        final int maxZ;
+
+        Footprint(TileArea parent, int shift, int minX, int minZ, int maxX, int maxZ)
+        {
+            this.parent = parent;
+            this.shift = shift;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+    }
+}
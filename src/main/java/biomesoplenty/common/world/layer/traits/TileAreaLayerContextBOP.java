@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2014-2019, the Biomes O' Plenty Team
+ *
+ * This work is licensed under a Creative Commons Attribution-NonCommercial-NoDerivatives 4.0 International Public License.
+ *
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-nc-nd/4.0/.
+ ******************************************************************************/
+package biomesoplenty.common.world.layer.traits;
+
+import biomesoplenty.common.world.layer.BiomeTraits;
+import net.minecraft.world.gen.ImprovedNoiseGenerator;
+import net.minecraft.world.gen.LazyAreaLayerContext;
+import net.minecraft.world.gen.layer.traits.IPixelTransformer;
+
+public class TileAreaLayerContextBOP implements IBOPContextExtended<TileArea>
+{
+    private final long worldSeed;
+    private final BiomeTraits biomeTraits;
+    private final TileAreaGraph graph;
+
+    // Random values are taken from a vanilla context so that seeds produce exactly the same layers as before
+    private final LazyAreaLayerContext random;
+
+    public TileAreaLayerContextBOP(TileAreaGraph graph, BiomeTraits biomeTraits, long seed, long seedModifier)
+    {
+        this.worldSeed = seed;
+        this.biomeTraits = biomeTraits;
+        this.graph = graph;
+        this.random = new LazyAreaLayerContext(0, seed, seedModifier);
+    }
+
+    @Override
+    public TileArea createResult(IPixelTransformer transformer)
+    {
+        return new TileArea(this.graph, transformer);
+    }
+
+    @Override
+    public TileArea createResult(IPixelTransformer transformer, TileArea area)
+    {
+        return new TileArea(this.graph, transformer, area);
+    }
+
+    @Override
+    public TileArea createResult(IPixelTransformer transformer, TileArea area1, TileArea area2)
+    {
+        return new TileArea(this.graph, transformer, area1, area2);
+    }
+
+    @Override
+    public void initRandom(long x, long z)
+    {
+        this.random.initRandom(x, z);
+    }
+
+    @Override
+    public int nextRandom(int bound)
+    {
+        return this.random.nextRandom(bound);
+    }
+
+    @Override
+    public ImprovedNoiseGenerator getBiomeNoise()
+    {
+        return this.random.getBiomeNoise();
+    }
+
+    @Override
+    public long getWorldSeed()
+    {
+        return this.worldSeed;
+    }
+
+    @Override
+    public BiomeTraits getBiomeTraits()
+    {
+        return this.biomeTraits;
+    }
+}
@@ -9,6 +9,7 @@
 package biomesoplenty.core;
 
 import biomesoplenty.common.command.BOPCommand;
+import biomesoplenty.common.command.BOPJobScheduler;
 import biomesoplenty.init.*;
 import net.minecraft.server.dedicated.ServerProperties;
 import net.minecraftforge.common.MinecraftForge;
@@ -19,6 +20,7 @@ import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLDedicatedServerSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLLoadCompleteEvent;
 import net.minecraftforge.fml.event.server.FMLServerStartingEvent;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -41,6 +43,7 @@ public class BiomesOPlenty
         FMLJavaModLoadingContext.get().getModEventBus().addListener(this::clientSetup);
         FMLJavaModLoadingContext.get().getModEventBus().addListener(this::loadComplete);
         MinecraftForge.EVENT_BUS.addListener(this::serverStarting);
+        MinecraftForge.EVENT_BUS.addListener(this::serverStopping);
 
         ModBiomes.setup();
         ModConfig.setup();
@@ -68,4 +71,9 @@ public class BiomesOPlenty
         logger.info("Registering BoP commands...");
         new BOPCommand(evt.getCommandDispatcher());
     }
+
+    public void serverStopping(FMLServerStoppingEvent evt)
+    {
+        BOPJobScheduler.cancelAll();
+    }
 }
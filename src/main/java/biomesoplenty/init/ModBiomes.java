@@ -13,6 +13,7 @@ import biomesoplenty.common.biome.BiomeRegistry;
 import biomesoplenty.common.biome.nether.*;
 import biomesoplenty.common.biome.overworld.*;
 import biomesoplenty.common.world.WorldTypeBOP;
+import biomesoplenty.common.world.layer.SubBiomeTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -183,6 +184,8 @@ public class ModBiomes
 
         BiomeRegistry.configureVanillaBiomes();
         BiomeRegistry.finalizeRegistrations(BiomeRegistry.RegistrationType.VANILLA_BIOME);
+        BOPClimates.freeze();
+        SubBiomeTable.rebuild();
 
         registerBiomeDictionaryTags();
         registerVillagerTypes();
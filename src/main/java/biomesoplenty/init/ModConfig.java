@@ -8,6 +8,7 @@
 package biomesoplenty.init;
 
 import biomesoplenty.common.world.BOPOverworldGenSettings;
+import biomesoplenty.common.world.layer.LayerBOP;
 import biomesoplenty.core.BiomesOPlenty;
 import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.fml.ModLoadingContext;
@@ -18,6 +19,8 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ModConfig
 {
@@ -51,6 +54,25 @@ public class ModConfig
         public static final ForgeConfigSpec.EnumValue<BOPOverworldGenSettings.RainfallVariationScheme> rainfallVariationScheme;
         public static final ForgeConfigSpec.BooleanValue enhanceVanillaBiomes;
 
+        public static final ForgeConfigSpec.EnumValue<LayerBOP.Engine> layerEngine;
+        public static final ForgeConfigSpec.IntValue layerCacheSize;
+        public static final ForgeConfigSpec.IntValue layerCacheMaxSize;
+        public static final ForgeConfigSpec.ConfigValue<List<? extends String>> layerCacheSizes;
+        public static final ForgeConfigSpec.BooleanValue adaptiveLayerCache;
+        public static final ForgeConfigSpec.IntValue layerCacheBudget;
+        public static final ForgeConfigSpec.BooleanValue perThreadLayerStacks;
+        public static final ForgeConfigSpec.IntValue maxLayerStacks;
+        public static final ForgeConfigSpec.ConfigValue<List<? extends String>> extraEdgeRules;
+        public static final ForgeConfigSpec.IntValue biomeCacheTiles;
+        public static final ForgeConfigSpec.BooleanValue persistentBiomeCache;
+
+        public static final ForgeConfigSpec.IntValue jobThreads;
+        public static final ForgeConfigSpec.IntValue maxQueuedJobs;
+        public static final ForgeConfigSpec.IntValue maxJobsPerPlayer;
+        public static final ForgeConfigSpec.IntValue pregenTickBudget;
+        public static final ForgeConfigSpec.IntValue pregenMaxPending;
+        public static final ForgeConfigSpec.IntValue pregenReportInterval;
+
         static
         {
             BUILDER.comment("World generation related options.");
@@ -62,6 +84,29 @@ public class ModConfig
             enhanceVanillaBiomes = BUILDER.comment("Enhance vanilla biomes by adding additional decoration.").define("enhance_vanilla_biomes", true);
             BUILDER.pop();
 
+            BUILDER.push("layers");
+            layerEngine = BUILDER.comment("How biome layers are evaluated. LAZY computes and caches each position on demand, TILED fills whole regions of every layer at once, and always gives each thread its own layer stack. Both produce identical worlds, which /bop checklayers verifies.").defineEnum("layer_engine", LayerBOP.Engine.LAZY);
+            layerCacheSize = BUILDER.comment("The number of entries cached by the first layers of each biome layer stack. Later layers derive their sizes from this.").defineInRange("layer_cache_size", 25, 1, 65536);
+            layerCacheMaxSize = BUILDER.comment("The largest number of entries a single layer may cache.").defineInRange("layer_cache_max_size", 8192, 1, 1048576);
+            layerCacheSizes = BUILDER.comment("Fixed cache sizes for individual layers, in the form name=size. Known names are land_sea, climate, biome_edge, sub_biome, river_init, rivers, shore, river_mix and mix_oceans.").defineList("layer_cache_sizes", new ArrayList<>(), (entry) -> entry instanceof String);
+            adaptiveLayerCache = BUILDER.comment("Grow or shrink layer caches at runtime based on how often they are hit.").define("adaptive_layer_cache", true);
+            layerCacheBudget = BUILDER.comment("The total number of entries the adaptive mode may allocate across a layer stack.").defineInRange("layer_cache_budget", 131072, 1, 16777216);
+            perThreadLayerStacks = BUILDER.comment("Give each world generation thread its own biome layer stack instead of sharing one between them. Always on with the TILED layer engine.").define("per_thread_layer_stacks", false);
+            maxLayerStacks = BUILDER.comment("The most threads which may have their own layer stack per dimension. Other threads share a single stack.").defineInRange("max_layer_stacks", 8, 1, 256);
+            extraEdgeRules = BUILDER.comment("Additional biome edge rules, applied after the built in ones. Use biome=edge to surround a biome with an edge biome, or biome=replacement near neighbour[,neighbour...] to replace a biome where it touches any of the neighbours.").defineList("extra_edge_rules", new ArrayList<>(), (entry) -> entry instanceof String);
+            biomeCacheTiles = BUILDER.comment("The number of 8x8 tiles of finished biomes cached per dimension, shared by all threads. Each tile covers 32x32 blocks. 0 disables the cache.").defineInRange("biome_cache_tiles", 4096, 0, 1048576);
+            persistentBiomeCache = BUILDER.comment("Save generated biomes in the world folder so they don't need to be generated again after a restart. Saved biomes are discarded automatically if the seed, generation settings or biomes.json change. Requires the biome cache.").define("persistent_biome_cache", false);
+            BUILDER.pop();
+
+            BUILDER.push("commands");
+            jobThreads = BUILDER.comment("The number of threads running long /bop commands, such as tpbiome.").defineInRange("job_threads", 2, 1, 64);
+            maxQueuedJobs = BUILDER.comment("The most /bop commands which may wait for a free thread. Further commands are refused.").defineInRange("max_queued_jobs", 16, 1, 1024);
+            maxJobsPerPlayer = BUILDER.comment("The most long /bop commands a single player may have queued or running at once.").defineInRange("max_jobs_per_player", 1, 1, 64);
+            pregenTickBudget = BUILDER.comment("The milliseconds of each server tick /bop pregen may spend. No new chunks are requested while ticks already take longer than 50 milliseconds less this.").defineInRange("pregen_tick_budget", 10, 1, 45);
+            pregenMaxPending = BUILDER.comment("The most chunks /bop pregen waits on at once.").defineInRange("pregen_max_pending", 16, 1, 1024);
+            pregenReportInterval = BUILDER.comment("The seconds between /bop pregen progress reports.").defineInRange("pregen_report_interval", 30, 1, 3600);
+            BUILDER.pop();
+
             SPEC = BUILDER.build();
         }
     }